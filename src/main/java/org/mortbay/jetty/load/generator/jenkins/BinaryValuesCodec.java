@@ -0,0 +1,150 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary layout of a values file:
+ * <ul>
+ * <li>a 4 bytes header: {@link #MAGIC}</li>
+ * <li>dictionary entries ({@link #PATH_ENTRY}, {@link #METHOD_ENTRY}): tag, int id, unsigned short length, utf-8
+ * bytes. An entry is always written before the first record using its id</li>
+ * <li>fixed width records ({@link #RECORD}): tag, timestamp, path id, method id, status, size, response time,
+ * latency time</li>
+ * </ul>
+ * All numbers are big endian. An id of <code>-1</code> means <code>null</code>.
+ * The tag of an entry or record is written last so a zero tag always marks the end of the written data, which
+ * is what is left at the end of a preallocated or partially written segment.
+ */
+public final class BinaryValuesCodec
+{
+    /**
+     * "LGV" followed by the format version
+     */
+    public static final int MAGIC = 0x4C475601;
+
+    public static final int HEADER_SIZE = 4;
+
+    public static final byte RECORD = 'R';
+
+    public static final byte PATH_ENTRY = 'P';
+
+    public static final byte METHOD_ENTRY = 'M';
+
+    /**
+     * tag + timestamp + path id + method id + status + size + response time + latency time
+     */
+    public static final int RECORD_SIZE = 1 + 8 + 4 + 2 + 2 + 8 + 8 + 8;
+
+    /**
+     * tag + id + length, the utf-8 bytes follow
+     */
+    public static final int ENTRY_HEADER_SIZE = 1 + 4 + 2;
+
+    public static final int MAX_ENTRY_LENGTH = 0xFFFF;
+
+    public static final byte END = 0;
+
+    private BinaryValuesCodec()
+    {
+        // no op
+    }
+
+    public static void writeHeader( ByteBuffer buffer )
+    {
+        buffer.putInt( MAGIC );
+    }
+
+    public static void writeRecord( ByteBuffer buffer, Values values, int pathId, int methodId )
+    {
+        int start = buffer.position();
+        buffer.position( start + 1 );
+        buffer.putLong( values.getEventTimestamp() ) //
+            .putInt( pathId ) //
+            .putShort( (short) methodId ) //
+            .putShort( (short) values.getStatus() ) //
+            .putLong( values.getSize() ) //
+            .putLong( values.getResponseTime() ) //
+            .putLong( values.getLatencyTime() );
+        buffer.put( start, RECORD );
+    }
+
+    public static byte[] encodeEntry( String value )
+    {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        if ( bytes.length > MAX_ENTRY_LENGTH )
+        {
+            throw new IllegalArgumentException( "dictionary entry too long: " + bytes.length + " bytes" );
+        }
+        return bytes;
+    }
+
+    public static void writeEntry( ByteBuffer buffer, byte tag, int id, byte[] bytes )
+    {
+        int start = buffer.position();
+        buffer.position( start + 1 );
+        buffer.putInt( id ) //
+            .putShort( (short) bytes.length ) //
+            .put( bytes );
+        buffer.put( start, tag );
+    }
+
+    /**
+     * Scans the buffer from its position and stops at the first end marker, unknown tag or truncated entry.
+     *
+     * @return the position right after the last complete entry or record
+     */
+    public static int validLength( ByteBuffer buffer )
+    {
+        while ( buffer.hasRemaining() )
+        {
+            int start = buffer.position();
+            byte tag = buffer.get();
+            if ( tag == RECORD )
+            {
+                if ( buffer.remaining() < RECORD_SIZE - 1 )
+                {
+                    return start;
+                }
+                buffer.position( start + RECORD_SIZE );
+            }
+            else if ( tag == PATH_ENTRY || tag == METHOD_ENTRY )
+            {
+                if ( buffer.remaining() < ENTRY_HEADER_SIZE - 1 )
+                {
+                    return start;
+                }
+                buffer.getInt();
+                int length = buffer.getShort() & 0xFFFF;
+                if ( buffer.remaining() < length )
+                {
+                    return start;
+                }
+                buffer.position( buffer.position() + length );
+            }
+            else
+            {
+                return start;
+            }
+        }
+        return buffer.position();
+    }
+
+}
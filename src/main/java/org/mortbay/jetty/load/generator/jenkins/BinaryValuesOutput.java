@@ -0,0 +1,128 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+/**
+ * Writes {@link Values} using the {@link BinaryValuesCodec} layout.
+ * Encoding is done in a reused buffer so there is no allocation per record.
+ * When writing to a file, a {@link ValuesIndex} is written next to it on close.
+ */
+public class BinaryValuesOutput
+    extends ChannelValuesOutput
+{
+
+    private final ValuesDictionary dictionary;
+
+    /**
+     * dictionary ids already written to this file
+     */
+    private final BitSet writtenPaths = new BitSet();
+
+    private final BitSet writtenMethods = new BitSet();
+
+    private final Path indexPath;
+
+    private final ValuesIndex index;
+
+    public BinaryValuesOutput( Path path, ValuesDictionary dictionary )
+        throws IOException
+    {
+        super( path );
+        this.dictionary = dictionary;
+        this.indexPath = ValuesIndex.indexPath( path );
+        this.index = new ValuesIndex();
+        Files.deleteIfExists( indexPath );
+        BinaryValuesCodec.writeHeader( buffer );
+    }
+
+    /**
+     * @param outputStream closed with this output, see {@link Lz4BlockOutputStream}
+     */
+    public BinaryValuesOutput( OutputStream outputStream, ValuesDictionary dictionary )
+    {
+        super( outputStream );
+        this.dictionary = dictionary;
+        this.indexPath = null;
+        this.index = null;
+        BinaryValuesCodec.writeHeader( buffer );
+    }
+
+    @Override
+    public void write( Values values )
+        throws IOException
+    {
+        int pathId = dictionary.pathId( values );
+        int methodId = dictionary.methodId( values );
+        if ( index != null )
+        {
+            index.mark( position() );
+        }
+        if ( pathId >= 0 && !writtenPaths.get( pathId ) )
+        {
+            writeEntry( BinaryValuesCodec.PATH_ENTRY, pathId, dictionary.path( pathId ) );
+            writtenPaths.set( pathId );
+        }
+        if ( methodId >= 0 && !writtenMethods.get( methodId ) )
+        {
+            writeEntry( BinaryValuesCodec.METHOD_ENTRY, methodId, dictionary.method( methodId ) );
+            writtenMethods.set( methodId );
+        }
+        ensureRemaining( BinaryValuesCodec.RECORD_SIZE );
+        BinaryValuesCodec.writeRecord( buffer, values, pathId, methodId );
+        if ( index != null )
+        {
+            index.record( values.getEventTimestamp(), pathId );
+        }
+    }
+
+    private void writeEntry( byte tag, int id, String value )
+        throws IOException
+    {
+        byte[] bytes = BinaryValuesCodec.encodeEntry( value );
+        ensureRemaining( BinaryValuesCodec.ENTRY_HEADER_SIZE + bytes.length );
+        BinaryValuesCodec.writeEntry( buffer, tag, id, bytes );
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( index == null )
+        {
+            super.close();
+            return;
+        }
+        index.finish( position() );
+        super.close();
+        for ( int id = writtenPaths.nextSetBit( 0 ); id >= 0; id = writtenPaths.nextSetBit( id + 1 ) )
+        {
+            index.path( id, dictionary.path( id ) );
+        }
+        for ( int id = writtenMethods.nextSetBit( 0 ); id >= 0; id = writtenMethods.nextSetBit( id + 1 ) )
+        {
+            index.method( id, dictionary.method( id ) );
+        }
+        index.write( indexPath );
+    }
+}
@@ -0,0 +1,197 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads back {@link Values} written with the {@link BinaryValuesCodec} layout.
+ */
+public class BinaryValuesReader
+    implements Closeable
+{
+
+    private final DataInputStream inputStream;
+
+    private final List<String> paths = new ArrayList<>();
+
+    private final List<String> methods = new ArrayList<>();
+
+    public BinaryValuesReader( Path path )
+        throws IOException
+    {
+        this( Files.newInputStream( path ) );
+    }
+
+    /**
+     * @param inputStream content written with or without {@link Lz4BlockOutputStream}
+     */
+    public BinaryValuesReader( InputStream inputStream )
+        throws IOException
+    {
+        this.inputStream = new DataInputStream( Lz4BlockInputStream.decompressIfNeeded( inputStream ) );
+        int magic = this.inputStream.readInt();
+        if ( magic != BinaryValuesCodec.MAGIC )
+        {
+            throw new IOException( "not a binary values file, magic: " + Integer.toHexString( magic ) );
+        }
+    }
+
+    /**
+     * @return the next {@link Values} or <code>null</code> if the end of the file has been reached
+     */
+    public Values read()
+        throws IOException
+    {
+        Values values = new Values();
+        return read( values ) ? values : null;
+    }
+
+    /**
+     * @param values the instance to fill with the next record
+     * @return <code>false</code> if the end of the file has been reached
+     */
+    public boolean read( Values values )
+        throws IOException
+    {
+        while ( true )
+        {
+            int tag = inputStream.read();
+            switch ( tag )
+            {
+                case -1:
+                case BinaryValuesCodec.END:
+                    return false;
+                case BinaryValuesCodec.RECORD:
+                    readRecord( values );
+                    return true;
+                case BinaryValuesCodec.PATH_ENTRY:
+                    readEntry( paths );
+                    break;
+                case BinaryValuesCodec.METHOD_ENTRY:
+                    readEntry( methods );
+                    break;
+                default:
+                    throw new IOException( "corrupted binary values file, unknown tag: " + tag );
+            }
+        }
+    }
+
+    public void forEach( Consumer<Values> consumer )
+        throws IOException
+    {
+        Values values = new Values();
+        while ( read( values ) )
+        {
+            consumer.accept( values );
+        }
+    }
+
+    /**
+     * Reads the segments written by {@link MappedValuesOutput} for the given file, recovering the last segment
+     * if the run was interrupted.
+     */
+    public static void forEachSegment( Path path, Consumer<Values> consumer )
+        throws IOException
+    {
+        forEach( MappedValuesOutput.recover( path ), consumer );
+    }
+
+    /**
+     * Reads the segments written by {@link MappedValuesOutput} in order.
+     */
+    public static void forEach( List<Path> segments, Consumer<Values> consumer )
+        throws IOException
+    {
+        for ( Path segment : segments )
+        {
+            try (BinaryValuesReader reader = new BinaryValuesReader( segment ))
+            {
+                reader.forEach( consumer );
+            }
+        }
+    }
+
+    private void readRecord( Values values )
+        throws IOException
+    {
+        try
+        {
+            long eventTimestamp = inputStream.readLong();
+            int pathId = inputStream.readInt();
+            int methodId = inputStream.readShort();
+            values.eventTimestamp( eventTimestamp ) //
+                .pathId( pathId ) //
+                .path( lookup( paths, pathId ) ) //
+                .methodId( methodId ) //
+                .method( lookup( methods, methodId ) ) //
+                .status( inputStream.readShort() ) //
+                .size( inputStream.readLong() ) //
+                .responseTime( inputStream.readLong() ) //
+                .latencyTime( inputStream.readLong() );
+        }
+        catch ( EOFException e )
+        {
+            throw new IOException( "truncated binary values file", e );
+        }
+    }
+
+    private void readEntry( List<String> dictionary )
+        throws IOException
+    {
+        int id = inputStream.readInt();
+        byte[] bytes = new byte[inputStream.readUnsignedShort()];
+        inputStream.readFully( bytes );
+        while ( dictionary.size() <= id )
+        {
+            dictionary.add( null );
+        }
+        dictionary.set( id, new String( bytes, StandardCharsets.UTF_8 ) );
+    }
+
+    private static String lookup( List<String> dictionary, int id )
+        throws IOException
+    {
+        if ( id < 0 )
+        {
+            return null;
+        }
+        if ( id >= dictionary.size() || dictionary.get( id ) == null )
+        {
+            throw new IOException( "corrupted binary values file, unknown dictionary id: " + id );
+        }
+        return dictionary.get( id );
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        inputStream.close();
+    }
+}
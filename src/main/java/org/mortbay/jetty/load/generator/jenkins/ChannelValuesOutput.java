@@ -0,0 +1,145 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Base of the outputs encoding a whole disruptor batch in one buffer, written with a single
+ * {@link FileChannel#write(ByteBuffer)} at {@link #endOfBatch()} or when the buffer is full.
+ */
+public abstract class ChannelValuesOutput
+    implements ValuesOutput
+{
+
+    protected static final int BUFFER_SIZE = 128 * 1024;
+
+    protected final ByteBuffer buffer;
+
+    private final FileChannel fileChannel;
+
+    private final OutputStream outputStream;
+
+    /**
+     * bytes already drained
+     */
+    private long written;
+
+    /**
+     * writes to the file with a direct buffer so the channel does not copy it
+     */
+    protected ChannelValuesOutput( Path path )
+        throws IOException
+    {
+        this.fileChannel = FileChannel.open( path, StandardOpenOption.CREATE, //
+                                             StandardOpenOption.TRUNCATE_EXISTING, //
+                                             StandardOpenOption.WRITE );
+        this.outputStream = null;
+        this.buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+    }
+
+    /**
+     * writes to a stream (i.e. {@link Lz4BlockOutputStream}) with a heap buffer passed as is
+     */
+    protected ChannelValuesOutput( OutputStream outputStream )
+    {
+        this.fileChannel = null;
+        this.outputStream = outputStream;
+        this.buffer = ByteBuffer.allocate( BUFFER_SIZE );
+    }
+
+    /**
+     * @return the offset in the file of the next byte put in the buffer
+     */
+    protected long position()
+    {
+        return written + buffer.position();
+    }
+
+    protected void ensureRemaining( int size )
+        throws IOException
+    {
+        if ( buffer.remaining() < size )
+        {
+            drain();
+        }
+    }
+
+    protected void drain()
+        throws IOException
+    {
+        written += buffer.position();
+        buffer.flip();
+        if ( fileChannel != null )
+        {
+            while ( buffer.hasRemaining() )
+            {
+                fileChannel.write( buffer );
+            }
+        }
+        else if ( buffer.hasRemaining() )
+        {
+            outputStream.write( buffer.array(), buffer.arrayOffset(), buffer.limit() );
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void endOfBatch()
+        throws IOException
+    {
+        drain();
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        drain();
+        if ( outputStream != null )
+        {
+            outputStream.flush();
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            drain();
+        }
+        finally
+        {
+            if ( fileChannel != null )
+            {
+                fileChannel.close();
+            }
+            else
+            {
+                outputStream.close();
+            }
+        }
+    }
+}
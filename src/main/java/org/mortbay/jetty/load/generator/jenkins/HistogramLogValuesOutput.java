@@ -0,0 +1,155 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes an HdrHistogram interval log (.hlog) of the response times instead of every sample:
+ * one untagged histogram for all the paths and one histogram per path, tagged with the url encoded path,
+ * every interval. Read it back with {@link HistogramLogValuesReader}.
+ */
+public class HistogramLogValuesOutput
+    implements ValuesOutput
+{
+
+    private final HistogramLogWriter histogramLogWriter;
+
+    private final ValuesDictionary dictionary;
+
+    private final long intervalMillis;
+
+    private final long highestTrackableValue;
+
+    private final int numberOfSignificantValueDigits;
+
+    private final Histogram global;
+
+    /**
+     * indexed by {@link ValuesDictionary} path id
+     */
+    private final List<Histogram> perPath = new ArrayList<>();
+
+    private long intervalStart;
+
+    public HistogramLogValuesOutput( Path path, ValuesDictionary dictionary, long intervalMillis,
+                                     long highestTrackableValue, int numberOfSignificantValueDigits )
+        throws IOException
+    {
+        this.histogramLogWriter = new HistogramLogWriter( path.toFile() );
+        this.dictionary = dictionary;
+        this.intervalMillis = intervalMillis;
+        this.highestTrackableValue = highestTrackableValue;
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        this.global = new Histogram( highestTrackableValue, numberOfSignificantValueDigits );
+        this.intervalStart = System.currentTimeMillis();
+        this.histogramLogWriter.outputLogFormatVersion();
+        this.histogramLogWriter.outputStartTime( intervalStart );
+        this.histogramLogWriter.outputLegend();
+    }
+
+    @Override
+    public void write( Values values )
+    {
+        long now = System.currentTimeMillis();
+        if ( now - intervalStart >= intervalMillis )
+        {
+            outputInterval( now );
+        }
+        long responseTime = Math.max( 0, Math.min( TimeUnit.NANOSECONDS.toMicros( values.getResponseTime() ), //
+                                                   highestTrackableValue ) );
+        global.recordValue( responseTime );
+        int pathId = dictionary.pathId( values );
+        if ( pathId >= 0 )
+        {
+            while ( perPath.size() <= pathId )
+            {
+                Histogram histogram = new Histogram( highestTrackableValue, numberOfSignificantValueDigits );
+                histogram.setTag( tag( dictionary.path( perPath.size() ) ) );
+                perPath.add( histogram );
+            }
+            perPath.get( pathId ).recordValue( responseTime );
+        }
+    }
+
+    private void outputInterval( long intervalEnd )
+    {
+        outputInterval( global, intervalEnd );
+        for ( Histogram histogram : perPath )
+        {
+            outputInterval( histogram, intervalEnd );
+        }
+        intervalStart = intervalEnd;
+    }
+
+    private void outputInterval( Histogram histogram, long intervalEnd )
+    {
+        if ( histogram.getTotalCount() > 0 )
+        {
+            histogram.setStartTimeStamp( intervalStart );
+            histogram.setEndTimeStamp( intervalEnd );
+            histogramLogWriter.outputIntervalHistogram( histogram );
+            histogram.reset();
+        }
+    }
+
+    /**
+     * tags cannot contain separators used by the log format
+     */
+    static String tag( String path )
+    {
+        try
+        {
+            return URLEncoder.encode( path == null ? "" : path, StandardCharsets.UTF_8.name() );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Writes the current interval if it is due, a partial interval is only written on close.
+     */
+    @Override
+    public void flush()
+    {
+        long now = System.currentTimeMillis();
+        if ( now - intervalStart >= intervalMillis )
+        {
+            outputInterval( now );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        outputInterval( System.currentTimeMillis() );
+        histogramLogWriter.close();
+    }
+}
@@ -0,0 +1,100 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns an interval log written by {@link HistogramLogValuesOutput} into {@link ResponseTimeInfo} time series.
+ */
+public class HistogramLogValuesReader
+{
+
+    /**
+     * key of the series of all the paths
+     */
+    public static final String GLOBAL = "*";
+
+    private HistogramLogValuesReader()
+    {
+        // no op
+    }
+
+    /**
+     * @param percentile the value of each interval to use as time, i.e 50 or 99
+     * @return per path (or {@link #GLOBAL}) one {@link ResponseTimeInfo} per interval, time stamped with the end of
+     * the interval, time in milli seconds
+     */
+    public static Map<String, List<ResponseTimeInfo>> readResponseTimeInfos( Path path, double percentile )
+        throws IOException
+    {
+        Map<String, List<ResponseTimeInfo>> series = new LinkedHashMap<>();
+        HistogramLogReader histogramLogReader = new HistogramLogReader( path.toFile() );
+        try
+        {
+            EncodableHistogram encodableHistogram;
+            while ( ( encodableHistogram = histogramLogReader.nextIntervalHistogram() ) != null )
+            {
+                Histogram histogram = (Histogram) encodableHistogram;
+                String key = histogram.getTag() == null ? GLOBAL : path( histogram.getTag() );
+                series.computeIfAbsent( key, s -> new ArrayList<>() ) //
+                    .add( new ResponseTimeInfo( histogram.getEndTimeStamp(), //
+                                                histogram.getValueAtPercentile( percentile ) / 1000, //
+                                                0 ) );
+            }
+        }
+        finally
+        {
+            histogramLogReader.close();
+        }
+        return series;
+    }
+
+    public static List<ResponseTimeInfo> readResponseTimeInfos( Path path, String resourcePath, double percentile )
+        throws IOException
+    {
+        List<ResponseTimeInfo> series =
+            readResponseTimeInfos( path, percentile ).get( resourcePath == null ? GLOBAL : resourcePath );
+        return series == null ? new ArrayList<>() : series;
+    }
+
+    static String path( String tag )
+    {
+        try
+        {
+            return URLDecoder.decode( tag, StandardCharsets.UTF_8.name() );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage(), e );
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reads an uncompressed {@link ValuesFileWriter.Format#BINARY} values file through its {@link ValuesIndex}, so a
+ * query such as "path X between t1 and t2" only reads the blocks which can contain matching records.
+ * Blocks are read with positional reads so they can be decoded concurrently on a {@link ForkJoinPool}.
+ * The index is built with one scan of the file, and saved, when it does not exist.
+ */
+public class IndexedValuesReader
+    implements Closeable
+{
+
+    private final FileChannel fileChannel;
+
+    private final ValuesIndex index;
+
+    public IndexedValuesReader( Path path )
+        throws IOException
+    {
+        this.fileChannel = FileChannel.open( path, StandardOpenOption.READ );
+        try
+        {
+            Path indexPath = ValuesIndex.indexPath( path );
+            if ( Files.exists( indexPath ) )
+            {
+                this.index = ValuesIndex.read( indexPath );
+            }
+            else
+            {
+                this.index = buildIndex();
+                this.index.write( indexPath );
+            }
+        }
+        catch ( IOException e )
+        {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    public ValuesIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @param path <code>null</code> for any path
+     * @param from inclusive, same unit as {@link Values#getEventTimestamp()}
+     * @param to inclusive
+     * @return the blocks which can contain matching records, in file order
+     */
+    public List<ValuesIndex.Block> blocks( String path, long from, long to )
+    {
+        int pathId = path == null ? -1 : index.pathId( path );
+        if ( path != null && pathId < 0 )
+        {
+            return Collections.emptyList();
+        }
+        return index.getBlocks().stream() //
+            .filter( block -> block.matches( pathId, from, to ) ) //
+            .collect( Collectors.toList() );
+    }
+
+    /**
+     * Sends the matching records to the consumer in file order, the same {@link Values} instance is reused.
+     */
+    public void forEach( String path, long from, long to, Consumer<Values> consumer )
+        throws IOException
+    {
+        Values values = new Values();
+        ByteBuffer buffer = null;
+        for ( ValuesIndex.Block block : blocks( path, from, to ) )
+        {
+            buffer = readBlock( block, buffer );
+            decode( buffer, path, from, to, values, consumer );
+        }
+    }
+
+    /**
+     * Decodes the matching blocks on the common fork join pool, see
+     * {@link #collect(ForkJoinPool, String, long, long, Supplier, BiConsumer, BinaryOperator)}.
+     */
+    public <A> A collect( String path, long from, long to, Supplier<A> supplier, BiConsumer<A, Values> accumulator,
+                          BinaryOperator<A> combiner )
+        throws IOException
+    {
+        return collect( ForkJoinPool.commonPool(), path, from, to, supplier, accumulator, combiner );
+    }
+
+    /**
+     * Each matching block is decoded by a task of the pool into its own container, containers are then combined.
+     * The {@link Values} given to the accumulator are reused so must not be kept.
+     */
+    public <A> A collect( ForkJoinPool pool, String path, long from, long to, Supplier<A> supplier,
+                          BiConsumer<A, Values> accumulator, BinaryOperator<A> combiner )
+        throws IOException
+    {
+        List<ValuesIndex.Block> blocks = blocks( path, from, to );
+        try
+        {
+            return pool.submit( () -> blocks.parallelStream() //
+                .map( block -> {
+                    A container = supplier.get();
+                    Values values = new Values();
+                    try
+                    {
+                        decode( readBlock( block, null ), path, from, to, values,
+                                current -> accumulator.accept( container, current ) );
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new UncheckedIOException( e );
+                    }
+                    return container;
+                } ) //
+                .reduce( combiner ) //
+                .orElseGet( supplier ) ).get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "interrupted while reading values", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof UncheckedIOException )
+            {
+                throw ( (UncheckedIOException) e.getCause() ).getCause();
+            }
+            throw new IOException( e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+    private ByteBuffer readBlock( ValuesIndex.Block block, ByteBuffer buffer )
+        throws IOException
+    {
+        if ( buffer == null || buffer.capacity() < block.getLength() )
+        {
+            buffer = ByteBuffer.allocate( block.getLength() );
+        }
+        buffer.clear();
+        buffer.limit( block.getLength() );
+        long position = block.getOffset();
+        while ( buffer.hasRemaining() )
+        {
+            // positional read, does not move the channel position so blocks can be read concurrently
+            int read = fileChannel.read( buffer, position );
+            if ( read < 0 )
+            {
+                throw new IOException( "truncated values file, block " + block );
+            }
+            position += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void decode( ByteBuffer buffer, String path, long from, long to, Values values,
+                         Consumer<Values> consumer )
+        throws IOException
+    {
+        int pathId = path == null ? -1 : index.pathId( path );
+        while ( buffer.hasRemaining() )
+        {
+            byte tag = buffer.get();
+            if ( tag == BinaryValuesCodec.RECORD )
+            {
+                long timestamp = buffer.getLong();
+                int recordPathId = buffer.getInt();
+                int methodId = buffer.getShort();
+                int status = buffer.getShort();
+                long size = buffer.getLong();
+                long responseTime = buffer.getLong();
+                long latencyTime = buffer.getLong();
+                if ( timestamp < from || timestamp > to || ( path != null && recordPathId != pathId ) )
+                {
+                    continue;
+                }
+                values.eventTimestamp( timestamp ) //
+                    .pathId( recordPathId ) //
+                    .path( index.path( recordPathId ) ) //
+                    .methodId( methodId ) //
+                    .method( index.method( methodId ) ) //
+                    .status( status ) //
+                    .size( size ) //
+                    .responseTime( responseTime ) //
+                    .latencyTime( latencyTime );
+                consumer.accept( values );
+            }
+            else if ( tag == BinaryValuesCodec.PATH_ENTRY || tag == BinaryValuesCodec.METHOD_ENTRY )
+            {
+                // already in the index
+                buffer.getInt();
+                int length = buffer.getShort() & 0xFFFF;
+                buffer.position( buffer.position() + length );
+            }
+            else
+            {
+                throw new IOException( "corrupted binary values file, unknown tag: " + tag );
+            }
+        }
+    }
+
+    /**
+     * One sequential scan of the file for files written without index.
+     */
+    private ValuesIndex buildIndex()
+        throws IOException
+    {
+        ValuesIndex index = new ValuesIndex();
+        ByteBuffer buffer = ByteBuffer.allocate( 1024 * 1024 );
+        fileChannel.position( 0 );
+        readFully( buffer, BinaryValuesCodec.HEADER_SIZE );
+        int magic = buffer.getInt();
+        if ( magic != BinaryValuesCodec.MAGIC )
+        {
+            throw new IOException( "not an uncompressed binary values file, magic: " + Integer.toHexString( magic ) );
+        }
+        long offset = BinaryValuesCodec.HEADER_SIZE;
+        buffer.clear();
+        while ( fileChannel.read( buffer ) >= 0 || buffer.position() > 0 )
+        {
+            buffer.flip();
+            int start = buffer.position();
+            int end = BinaryValuesCodec.validLength( buffer.duplicate() );
+            if ( end == start )
+            {
+                // nothing complete left: end of the written data
+                break;
+            }
+            while ( buffer.position() < end )
+            {
+                index.mark( offset + buffer.position() - start );
+                byte tag = buffer.get();
+                if ( tag == BinaryValuesCodec.RECORD )
+                {
+                    long timestamp = buffer.getLong();
+                    int pathId = buffer.getInt();
+                    buffer.position( buffer.position() + BinaryValuesCodec.RECORD_SIZE - 1 - 8 - 4 );
+                    index.record( timestamp, pathId );
+                }
+                else
+                {
+                    int id = buffer.getInt();
+                    byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                    buffer.get( bytes );
+                    String value = new String( bytes, StandardCharsets.UTF_8 );
+                    if ( tag == BinaryValuesCodec.PATH_ENTRY )
+                    {
+                        index.path( id, value );
+                    }
+                    else
+                    {
+                        index.method( id, value );
+                    }
+                }
+            }
+            offset += end - start;
+            buffer.compact();
+        }
+        index.finish( offset );
+        return index;
+    }
+
+    private void readFully( ByteBuffer buffer, int length )
+        throws IOException
+    {
+        buffer.clear();
+        buffer.limit( length );
+        while ( buffer.hasRemaining() )
+        {
+            if ( fileChannel.read( buffer ) < 0 )
+            {
+                throw new IOException( "truncated values file" );
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        fileChannel.close();
+    }
+}
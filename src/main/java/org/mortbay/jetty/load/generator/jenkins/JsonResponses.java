@@ -0,0 +1,55 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+
+/**
+ * JSON endpoints write with one {@link JsonGenerator} per request, straight to the servlet output stream, so
+ * nothing is materialized before being sent. Generators come from a shared {@link ObjectMapper} which is thread
+ * safe once configured.
+ */
+public final class JsonResponses
+{
+
+    public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper() //
+        .configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false ) //
+        // the servlet container owns the response stream
+        .configure( JsonGenerator.Feature.AUTO_CLOSE_TARGET, false );
+
+    private JsonResponses()
+    {
+        // no op
+    }
+
+    /**
+     * @return a generator to close once the document is written, which flushes it
+     */
+    public static JsonGenerator newGenerator( StaplerResponse rsp )
+        throws IOException
+    {
+        rsp.setContentType( "application/json; charset=utf-8" );
+        return OBJECT_MAPPER.getFactory().createGenerator( rsp.getOutputStream(), JsonEncoding.UTF8 );
+    }
+}
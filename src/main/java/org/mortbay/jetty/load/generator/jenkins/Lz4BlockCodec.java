@@ -0,0 +1,219 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pure java implementation of the LZ4 block format (greedy matching, 64KiB window), no native library needed.
+ * An instance keeps its hash table so it must only be used by one thread.
+ */
+public class Lz4BlockCodec
+{
+
+    private static final int MIN_MATCH = 4;
+
+    /**
+     * the last literals of a block are never part of a match
+     */
+    private static final int LAST_LITERALS = 5;
+
+    /**
+     * a match cannot start in the last 12 bytes of a block
+     */
+    private static final int MF_LIMIT = 12;
+
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final int HASH_LOG = 12;
+
+    private static final int RUN_MASK = 15;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    public static int maxCompressedLength( int length )
+    {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * @param dst must have at least {@link #maxCompressedLength(int)} bytes available from dstOff
+     * @return the number of bytes written to dst
+     */
+    public int compress( byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff )
+    {
+        int srcEnd = srcOff + srcLen;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int mfLimit = srcEnd - MF_LIMIT;
+        int anchor = srcOff;
+        int ip = srcOff;
+        int dp = dstOff;
+
+        if ( srcLen > MF_LIMIT )
+        {
+            Arrays.fill( hashTable, -1 );
+            while ( ip < mfLimit )
+            {
+                int sequence = readInt( src, ip );
+                int hash = hash( sequence );
+                int ref = hashTable[hash];
+                hashTable[hash] = ip;
+                if ( ref < 0 || ip - ref > MAX_DISTANCE || readInt( src, ref ) != sequence )
+                {
+                    ip++;
+                    continue;
+                }
+
+                // extend the match backwards over pending literals
+                while ( ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1] )
+                {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while ( ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength] )
+                {
+                    matchLength++;
+                }
+
+                int literalLength = ip - anchor;
+                int token = dp++;
+                dp = writeLength( dst, dp, literalLength );
+                System.arraycopy( src, anchor, dst, dp, literalLength );
+                dp += literalLength;
+                int offset = ip - ref;
+                dst[dp++] = (byte) offset;
+                dst[dp++] = (byte) ( offset >>> 8 );
+                int extraMatchLength = matchLength - MIN_MATCH;
+                dp = writeLength( dst, dp, extraMatchLength );
+                dst[token] = (byte) ( ( Math.min( literalLength, RUN_MASK ) << 4 ) //
+                    | Math.min( extraMatchLength, RUN_MASK ) );
+
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+
+        int literalLength = srcEnd - anchor;
+        dst[dp++] = (byte) ( Math.min( literalLength, RUN_MASK ) << 4 );
+        dp = writeLength( dst, dp, literalLength );
+        System.arraycopy( src, anchor, dst, dp, literalLength );
+        dp += literalLength;
+        return dp - dstOff;
+    }
+
+    /**
+     * @return the number of bytes written to dst
+     * @throws IOException if the compressed data is corrupted or does not fit in dstLen
+     */
+    public static int decompress( byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen )
+        throws IOException
+    {
+        int srcEnd = srcOff + srcLen;
+        int dstEnd = dstOff + dstLen;
+        int sp = srcOff;
+        int dp = dstOff;
+        try
+        {
+            while ( true )
+            {
+                int token = src[sp++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if ( literalLength == RUN_MASK )
+                {
+                    int b;
+                    do
+                    {
+                        b = src[sp++] & 0xFF;
+                        literalLength += b;
+                    }
+                    while ( b == 255 );
+                }
+                if ( sp + literalLength > srcEnd || dp + literalLength > dstEnd )
+                {
+                    throw new IOException( "corrupted lz4 block, literals out of bounds" );
+                }
+                System.arraycopy( src, sp, dst, dp, literalLength );
+                sp += literalLength;
+                dp += literalLength;
+                if ( sp >= srcEnd )
+                {
+                    return dp - dstOff;
+                }
+
+                int offset = ( src[sp] & 0xFF ) | ( ( src[sp + 1] & 0xFF ) << 8 );
+                sp += 2;
+                int matchLength = token & RUN_MASK;
+                if ( matchLength == RUN_MASK )
+                {
+                    int b;
+                    do
+                    {
+                        b = src[sp++] & 0xFF;
+                        matchLength += b;
+                    }
+                    while ( b == 255 );
+                }
+                matchLength += MIN_MATCH;
+                int ref = dp - offset;
+                if ( offset == 0 || ref < dstOff || dp + matchLength > dstEnd )
+                {
+                    throw new IOException( "corrupted lz4 block, match out of bounds" );
+                }
+                // byte per byte as the match can overlap what it is copying
+                for ( int i = 0; i < matchLength; i++ )
+                {
+                    dst[dp++] = dst[ref++];
+                }
+            }
+        }
+        catch ( ArrayIndexOutOfBoundsException e )
+        {
+            throw new IOException( "corrupted lz4 block", e );
+        }
+    }
+
+    private static int writeLength( byte[] dst, int dp, int length )
+    {
+        if ( length >= RUN_MASK )
+        {
+            int remaining = length - RUN_MASK;
+            while ( remaining >= 255 )
+            {
+                dst[dp++] = (byte) 255;
+                remaining -= 255;
+            }
+            dst[dp++] = (byte) remaining;
+        }
+        return dp;
+    }
+
+    private static int readInt( byte[] buffer, int index )
+    {
+        return ( buffer[index] & 0xFF ) | ( ( buffer[index + 1] & 0xFF ) << 8 ) //
+            | ( ( buffer[index + 2] & 0xFF ) << 16 ) | ( ( buffer[index + 3] & 0xFF ) << 24 );
+    }
+
+    private static int hash( int sequence )
+    {
+        return ( sequence * -1640531535 ) >>> ( 32 - HASH_LOG );
+    }
+
+}
@@ -0,0 +1,227 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming counterpart of {@link Lz4BlockOutputStream}, only one block is held in memory.
+ */
+public class Lz4BlockInputStream
+    extends FilterInputStream
+{
+
+    private final DataInputStream dataInputStream;
+
+    private final int maxBlockSize;
+
+    private byte[] block = new byte[Lz4BlockOutputStream.DEFAULT_BLOCK_SIZE];
+
+    private byte[] compressed = new byte[Lz4BlockCodec.maxCompressedLength( block.length )];
+
+    private int position;
+
+    private int limit;
+
+    public Lz4BlockInputStream( InputStream in )
+        throws IOException
+    {
+        this( in, Lz4BlockOutputStream.MAX_BLOCK_SIZE );
+    }
+
+    /**
+     * @param maxBlockSize blocks announcing a larger decompressed or stored length are rejected as corrupted
+     * rather than allocated
+     */
+    public Lz4BlockInputStream( InputStream in, int maxBlockSize )
+        throws IOException
+    {
+        this( new DataInputStream( in ), maxBlockSize );
+    }
+
+    private Lz4BlockInputStream( DataInputStream in, int maxBlockSize )
+        throws IOException
+    {
+        super( in );
+        if ( maxBlockSize < 1 )
+        {
+            throw new IllegalArgumentException( "maxBlockSize must be positive: " + maxBlockSize );
+        }
+        this.dataInputStream = in;
+        this.maxBlockSize = maxBlockSize;
+        int magic = in.readInt();
+        if ( magic != Lz4BlockOutputStream.MAGIC )
+        {
+            throw new IOException( "not a compressed values file, magic: " + Integer.toHexString( magic ) );
+        }
+    }
+
+    /**
+     * @return a stream reading the decompressed content if the stream starts with the
+     * {@link Lz4BlockOutputStream#MAGIC}, otherwise a buffered stream reading the content as is
+     */
+    public static InputStream decompressIfNeeded( InputStream in )
+        throws IOException
+    {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream( in );
+        bufferedInputStream.mark( 4 );
+        int magic = 0;
+        int read = 0;
+        for ( ; read < 4; read++ )
+        {
+            int b = bufferedInputStream.read();
+            if ( b < 0 )
+            {
+                break;
+            }
+            magic = ( magic << 8 ) | b;
+        }
+        bufferedInputStream.reset();
+        if ( read == 4 && magic == Lz4BlockOutputStream.MAGIC )
+        {
+            return new Lz4BlockInputStream( bufferedInputStream );
+        }
+        return bufferedInputStream;
+    }
+
+    /**
+     * @return <code>false</code> at the end of the stream
+     */
+    private boolean nextBlock()
+        throws IOException
+    {
+        int b = dataInputStream.read();
+        if ( b < 0 )
+        {
+            return false;
+        }
+        int rawLength;
+        int storedLength;
+        try
+        {
+            rawLength = ( b << 24 ) | ( dataInputStream.readUnsignedByte() << 16 ) //
+                | dataInputStream.readUnsignedShort();
+            storedLength = dataInputStream.readInt();
+        }
+        catch ( EOFException e )
+        {
+            throw new IOException( "truncated compressed block header", e );
+        }
+        if ( rawLength <= 0 || rawLength > maxBlockSize || storedLength <= 0 || storedLength > rawLength )
+        {
+            throw new IOException( "corrupted compressed block, length " + rawLength + "/" + storedLength );
+        }
+        if ( block.length < rawLength )
+        {
+            block = new byte[rawLength];
+        }
+        if ( storedLength == rawLength )
+        {
+            dataInputStream.readFully( block, 0, rawLength );
+        }
+        else
+        {
+            if ( compressed.length < storedLength )
+            {
+                compressed = new byte[storedLength];
+            }
+            dataInputStream.readFully( compressed, 0, storedLength );
+            int length = Lz4BlockCodec.decompress( compressed, 0, storedLength, block, 0, rawLength );
+            if ( length != rawLength )
+            {
+                throw new IOException( "corrupted compressed block, expected " + rawLength + " bytes got " + length );
+            }
+        }
+        position = 0;
+        limit = rawLength;
+        return true;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        if ( position == limit && !nextBlock() )
+        {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read( byte[] bytes, int off, int len )
+        throws IOException
+    {
+        if ( len == 0 )
+        {
+            return 0;
+        }
+        if ( position == limit && !nextBlock() )
+        {
+            return -1;
+        }
+        int length = Math.min( len, limit - position );
+        System.arraycopy( block, position, bytes, off, length );
+        position += length;
+        return length;
+    }
+
+    @Override
+    public long skip( long n )
+        throws IOException
+    {
+        long skipped = 0;
+        while ( skipped < n && ( position < limit || nextBlock() ) )
+        {
+            int length = (int) Math.min( n - skipped, limit - position );
+            position += length;
+            skipped += length;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available()
+    {
+        return limit - position;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark( int readlimit )
+    {
+        // not supported
+    }
+
+    @Override
+    public synchronized void reset()
+        throws IOException
+    {
+        throw new IOException( "mark/reset not supported" );
+    }
+}
@@ -0,0 +1,170 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses what is written in independent blocks using {@link Lz4BlockCodec}.
+ * Layout: <code>magic (int)</code> then for each block <code>rawLength (int) | storedLength (int) | bytes</code>,
+ * a block with <code>storedLength == rawLength</code> is not compressed.
+ * Buffers are allocated once so compressing a block does not allocate, not thread safe.
+ */
+public class Lz4BlockOutputStream
+    extends FilterOutputStream
+{
+
+    /**
+     * "LGZ1"
+     */
+    public static final int MAGIC = 0x4C475A31;
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Largest block written, and by default accepted by {@link Lz4BlockInputStream}
+     */
+    public static final int MAX_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    public static final int BLOCK_HEADER_SIZE = 8;
+
+    private final Lz4BlockCodec codec = new Lz4BlockCodec();
+
+    private final byte[] block;
+
+    private final byte[] compressed;
+
+    private int count;
+
+    private boolean closed;
+
+    public Lz4BlockOutputStream( OutputStream out )
+        throws IOException
+    {
+        this( out, DEFAULT_BLOCK_SIZE );
+    }
+
+    public Lz4BlockOutputStream( OutputStream out, int blockSize )
+        throws IOException
+    {
+        super( out );
+        if ( blockSize < 1024 || blockSize > MAX_BLOCK_SIZE )
+        {
+            throw new IllegalArgumentException( "blockSize must be between 1024 and " + MAX_BLOCK_SIZE //
+                                                    + ": " + blockSize );
+        }
+        this.block = new byte[blockSize];
+        this.compressed = new byte[BLOCK_HEADER_SIZE + Lz4BlockCodec.maxCompressedLength( blockSize )];
+        writeInt( compressed, 0, MAGIC );
+        out.write( compressed, 0, 4 );
+    }
+
+    @Override
+    public void write( int b )
+        throws IOException
+    {
+        if ( count == block.length )
+        {
+            writeBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write( byte[] bytes, int off, int len )
+        throws IOException
+    {
+        while ( len > 0 )
+        {
+            if ( count == block.length )
+            {
+                writeBlock();
+            }
+            int length = Math.min( len, block.length - count );
+            System.arraycopy( bytes, off, block, count, length );
+            count += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    private void writeBlock()
+        throws IOException
+    {
+        if ( count == 0 )
+        {
+            return;
+        }
+        int length = codec.compress( block, 0, count, compressed, BLOCK_HEADER_SIZE );
+        writeInt( compressed, 0, count );
+        if ( length < count )
+        {
+            writeInt( compressed, 4, length );
+            out.write( compressed, 0, BLOCK_HEADER_SIZE + length );
+        }
+        else
+        {
+            // incompressible, stored as is
+            writeInt( compressed, 4, count );
+            out.write( compressed, 0, BLOCK_HEADER_SIZE );
+            out.write( block, 0, count );
+        }
+        count = 0;
+    }
+
+    /**
+     * Writes the pending bytes as a (smaller) block so flushing often hurts the compression ratio.
+     */
+    @Override
+    public void flush()
+        throws IOException
+    {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static void writeInt( byte[] buffer, int index, int value )
+    {
+        buffer[index] = (byte) ( value >>> 24 );
+        buffer[index + 1] = (byte) ( value >>> 16 );
+        buffer[index + 2] = (byte) ( value >>> 8 );
+        buffer[index + 3] = (byte) value;
+    }
+
+}
@@ -0,0 +1,302 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Appends {@link Values} using the {@link BinaryValuesCodec} layout into preallocated memory mapped segments
+ * named <code>[file].00000</code>, <code>[file].00001</code>...
+ * Each segment starts with the header and repeats the dictionary entries it uses so it can be read on its own.
+ * Segments are only forced to disk when rolling to the next one and on {@link #close()}, then unmapped and
+ * truncated to the written length. Opening an output starts a new run and deletes the segments of the previous one,
+ * as the other outputs truncate their file. The segments of a crashed run must be {@link #recover(Path) recovered}
+ * before being read.
+ */
+public class MappedValuesOutput
+    implements ValuesOutput
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( MappedValuesOutput.class );
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    public static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private final Path path;
+
+    private final int segmentSize;
+
+    private final ValuesDictionary dictionary;
+
+    /**
+     * utf-8 bytes of the dictionary entries, indexed by id
+     */
+    private final List<byte[]> pathEntries = new ArrayList<>();
+
+    private final List<byte[]> methodEntries = new ArrayList<>();
+
+    private final BitSet segmentPaths = new BitSet();
+
+    private final BitSet segmentMethods = new BitSet();
+
+    private int segmentIndex = -1;
+
+    private Path segmentPath;
+
+    private MappedByteBuffer segment;
+
+    public MappedValuesOutput( Path path, int segmentSize, ValuesDictionary dictionary )
+        throws IOException
+    {
+        if ( segmentSize < MIN_SEGMENT_SIZE )
+        {
+            throw new IllegalArgumentException( "segmentSize must be at least " + MIN_SEGMENT_SIZE );
+        }
+        this.path = path;
+        this.segmentSize = segmentSize;
+        this.dictionary = dictionary;
+        for ( Path previous : segments( path ) )
+        {
+            Files.delete( previous );
+        }
+        nextSegment();
+    }
+
+    @Override
+    public void write( Values values )
+        throws IOException
+    {
+        int pathId = dictionary.pathId( values );
+        int methodId = dictionary.methodId( values );
+        if ( pathId >= pathEntries.size() )
+        {
+            cacheEntries( pathEntries, pathId, dictionary::path );
+        }
+        if ( methodId >= methodEntries.size() )
+        {
+            cacheEntries( methodEntries, methodId, dictionary::method );
+        }
+        // the record and the entries it needs must land in the same segment
+        int size = BinaryValuesCodec.RECORD_SIZE //
+            + pendingSize( segmentPaths, pathEntries, pathId ) //
+            + pendingSize( segmentMethods, methodEntries, methodId );
+        if ( segment.remaining() < size )
+        {
+            closeSegment();
+            nextSegment();
+        }
+        writeEntry( segmentPaths, pathEntries, BinaryValuesCodec.PATH_ENTRY, pathId );
+        writeEntry( segmentMethods, methodEntries, BinaryValuesCodec.METHOD_ENTRY, methodId );
+        BinaryValuesCodec.writeRecord( segment, values, pathId, methodId );
+    }
+
+    private static void cacheEntries( List<byte[]> entries, int id, IntFunction<String> lookup )
+    {
+        while ( entries.size() <= id )
+        {
+            entries.add( BinaryValuesCodec.encodeEntry( lookup.apply( entries.size() ) ) );
+        }
+    }
+
+    private static int pendingSize( BitSet written, List<byte[]> entries, int id )
+    {
+        return id < 0 || written.get( id ) ? 0 : BinaryValuesCodec.ENTRY_HEADER_SIZE + entries.get( id ).length;
+    }
+
+    private void writeEntry( BitSet written, List<byte[]> entries, byte tag, int id )
+    {
+        if ( id >= 0 && !written.get( id ) )
+        {
+            BinaryValuesCodec.writeEntry( segment, tag, id, entries.get( id ) );
+            written.set( id );
+        }
+    }
+
+    private void nextSegment()
+        throws IOException
+    {
+        segmentIndex++;
+        segmentPath = segmentPath( path, segmentIndex );
+        try (FileChannel channel = FileChannel.open( segmentPath, StandardOpenOption.CREATE_NEW,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE ))
+        {
+            // the mapping stays valid once the channel is closed
+            segment = channel.map( FileChannel.MapMode.READ_WRITE, 0, segmentSize );
+        }
+        segmentPaths.clear();
+        segmentMethods.clear();
+        BinaryValuesCodec.writeHeader( segment );
+    }
+
+    private void closeSegment()
+        throws IOException
+    {
+        segment.force();
+        int length = segment.position();
+        // a file cannot be truncated while mapped on some platforms (e.g. Windows)
+        unmap( segment );
+        segment = null;
+        try (FileChannel channel = FileChannel.open( segmentPath, StandardOpenOption.WRITE ))
+        {
+            channel.truncate( length );
+        }
+    }
+
+    /**
+     * Releases the mapping now instead of when the buffer is garbage collected, the buffer must not be used anymore.
+     */
+    static void unmap( MappedByteBuffer buffer )
+    {
+        try
+        {
+            // java 9+
+            Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+            Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+            theUnsafe.setAccessible( true );
+            Method invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+            invokeCleaner.invoke( theUnsafe.get( null ), buffer );
+            return;
+        }
+        catch ( NoSuchMethodException e )
+        {
+            // java 8
+        }
+        catch ( ReflectiveOperationException | RuntimeException e )
+        {
+            LOGGER.debug( "cannot unmap buffer: {}", e.toString() );
+            return;
+        }
+        try
+        {
+            Method cleanerMethod = buffer.getClass().getMethod( "cleaner" );
+            cleanerMethod.setAccessible( true );
+            Object cleaner = cleanerMethod.invoke( buffer );
+            if ( cleaner != null )
+            {
+                cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+            }
+        }
+        catch ( ReflectiveOperationException | RuntimeException e )
+        {
+            LOGGER.debug( "cannot unmap buffer: {}", e.toString() );
+        }
+    }
+
+    /**
+     * Data is already in the page cache, segments are forced to disk when rolling and on close only.
+     */
+    @Override
+    public void flush()
+    {
+        // no op
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( segment != null )
+        {
+            closeSegment();
+        }
+    }
+
+    public static Path segmentPath( Path path, int index )
+    {
+        return path.resolveSibling( String.format( "%s.%05d", path.getFileName(), index ) );
+    }
+
+    /**
+     * @return the existing segments of the given file in writing order
+     */
+    public static List<Path> segments( Path path )
+        throws IOException
+    {
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName().toString() + ".";
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream( directory, prefix + "[0-9][0-9][0-9][0-9][0-9]" ))
+        {
+            stream.forEach( segments::add );
+        }
+        Collections.sort( segments );
+        return segments;
+    }
+
+    /**
+     * Truncates the last segment of an interrupted run after its last complete record or entry,
+     * dropping the preallocated space and a possibly half written record.
+     * Must not be called while an output is still writing the segments.
+     *
+     * @return the segments which can be read
+     */
+    public static List<Path> recover( Path path )
+        throws IOException
+    {
+        List<Path> segments = segments( path );
+        if ( segments.isEmpty() )
+        {
+            return segments;
+        }
+        Path last = segments.get( segments.size() - 1 );
+        int validLength = 0;
+        try (FileChannel channel = FileChannel.open( last, StandardOpenOption.READ, StandardOpenOption.WRITE ))
+        {
+            long size = channel.size();
+            if ( size >= BinaryValuesCodec.HEADER_SIZE )
+            {
+                MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+                if ( buffer.getInt() == BinaryValuesCodec.MAGIC )
+                {
+                    validLength = BinaryValuesCodec.validLength( buffer );
+                }
+                unmap( buffer );
+            }
+            if ( validLength > 0 && validLength < size )
+            {
+                LOGGER.info( "truncate segment {} from {} to {} bytes", last, size, validLength );
+                channel.truncate( validLength );
+            }
+        }
+        if ( validLength == 0 )
+        {
+            LOGGER.info( "drop unreadable segment {}", last );
+            Files.delete( last );
+            segments.remove( segments.size() - 1 );
+        }
+        return segments;
+    }
+}
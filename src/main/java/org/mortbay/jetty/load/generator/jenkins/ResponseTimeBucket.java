@@ -0,0 +1,86 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+/**
+ * Aggregate of the {@link ResponseTimeInfo} of one time bucket, see {@link ResponseTimeDownsampler}.
+ */
+public class ResponseTimeBucket
+{
+
+    // start of the bucket in ms
+    private long timeStamp;
+
+    private long count;
+
+    // response times in ms
+    private long min;
+
+    private double mean;
+
+    private long p99;
+
+    private long max;
+
+    public ResponseTimeBucket( long timeStamp, long count, long min, double mean, long p99, long max )
+    {
+        this.timeStamp = timeStamp;
+        this.count = count;
+        this.min = min;
+        this.mean = mean;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getTimeStamp()
+    {
+        return timeStamp;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getMin()
+    {
+        return min;
+    }
+
+    public double getMean()
+    {
+        return mean;
+    }
+
+    public long getP99()
+    {
+        return p99;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ResponseTimeBucket{" + "timeStamp=" + timeStamp + ", count=" + count + ", min=" + min + ", mean="
+            + mean + ", p99=" + p99 + ", max=" + max + '}';
+    }
+}
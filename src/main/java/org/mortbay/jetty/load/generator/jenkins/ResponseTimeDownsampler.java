@@ -0,0 +1,182 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces a response time series to at most a target number of fixed interval buckets in one streaming pass,
+ * whatever the size of the run. The time range does not need to be known up front: when a point falls after the
+ * last bucket, adjacent buckets are merged two by two and the interval doubles, so a run ends up with between half
+ * and all of the target number of buckets.
+ * Points are expected in (roughly) ascending time order, earlier points go to the first bucket.
+ * Not thread safe.
+ */
+public class ResponseTimeDownsampler
+{
+
+    public static final int DEFAULT_POINTS = 500;
+
+    /**
+     * upper bound of the requested points so the payload stays small
+     */
+    public static final int MAX_POINTS = 2000;
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Bucket[] buckets;
+
+    private long start = -1;
+
+    private long interval;
+
+    /**
+     * @param points maximum number of buckets
+     * @param interval initial bucket interval in ms
+     */
+    public ResponseTimeDownsampler( int points, long interval )
+    {
+        if ( points < 2 )
+        {
+            throw new IllegalArgumentException( "points must be at least 2: " + points );
+        }
+        this.buckets = new Bucket[points];
+        this.interval = Math.max( 1, interval );
+    }
+
+    public ResponseTimeDownsampler( int points )
+    {
+        this( points, 1 );
+    }
+
+    /**
+     * @param points requested number of points, {@link #DEFAULT_POINTS} if not positive and at most
+     * {@link #MAX_POINTS}
+     */
+    public static List<ResponseTimeBucket> downsample( Iterable<ResponseTimeInfo> responseTimeInfos, int points )
+    {
+        ResponseTimeDownsampler downsampler =
+            new ResponseTimeDownsampler( points > 1 ? Math.min( points, MAX_POINTS ) : DEFAULT_POINTS );
+        for ( ResponseTimeInfo responseTimeInfo : responseTimeInfos )
+        {
+            downsampler.add( responseTimeInfo );
+        }
+        return downsampler.getBuckets();
+    }
+
+    public void add( ResponseTimeInfo responseTimeInfo )
+    {
+        add( responseTimeInfo.getTimeStamp(), responseTimeInfo.getTime() );
+    }
+
+    /**
+     * @param timeStamp in ms
+     * @param time response time in ms
+     */
+    public void add( long timeStamp, long time )
+    {
+        if ( start < 0 )
+        {
+            start = timeStamp;
+        }
+        long index = Math.max( 0, ( timeStamp - start ) / interval );
+        while ( index >= buckets.length )
+        {
+            mergeBuckets();
+            index = ( timeStamp - start ) / interval;
+        }
+        Bucket bucket = buckets[(int) index];
+        if ( bucket == null )
+        {
+            bucket = buckets[(int) index] = new Bucket();
+        }
+        bucket.add( Math.max( 0, time ) );
+    }
+
+    private void mergeBuckets()
+    {
+        for ( int i = 0; i < buckets.length; i += 2 )
+        {
+            Bucket merged = buckets[i];
+            Bucket next = i + 1 < buckets.length ? buckets[i + 1] : null;
+            if ( merged == null )
+            {
+                merged = next;
+            }
+            else if ( next != null )
+            {
+                merged.add( next );
+            }
+            buckets[i] = null;
+            if ( i + 1 < buckets.length )
+            {
+                buckets[i + 1] = null;
+            }
+            buckets[i / 2] = merged;
+        }
+        interval *= 2;
+    }
+
+    /**
+     * @return the non empty buckets in time order
+     */
+    public List<ResponseTimeBucket> getBuckets()
+    {
+        List<ResponseTimeBucket> result = new ArrayList<>();
+        for ( int i = 0; i < buckets.length; i++ )
+        {
+            Bucket bucket = buckets[i];
+            if ( bucket != null )
+            {
+                Histogram histogram = bucket.histogram;
+                result.add( new ResponseTimeBucket( start + i * interval, histogram.getTotalCount(), //
+                                                    histogram.getMinValue(), histogram.getMean(), //
+                                                    histogram.getValueAtPercentile( 99 ), //
+                                                    histogram.getMaxValue() ) );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return current bucket interval in ms
+     */
+    public long getInterval()
+    {
+        return interval;
+    }
+
+    private static class Bucket
+    {
+        // auto resizing so there is no highest trackable value to guess, values are within 1%
+        private final Histogram histogram = new Histogram( SIGNIFICANT_DIGITS );
+
+        void add( long time )
+        {
+            histogram.recordValue( time );
+        }
+
+        void add( Bucket bucket )
+        {
+            histogram.add( bucket.histogram );
+        }
+    }
+}
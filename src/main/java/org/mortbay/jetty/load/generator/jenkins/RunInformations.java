@@ -1,5 +1,8 @@
 package org.mortbay.jetty.load.generator.jenkins;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.lang3.StringUtils;
 import org.mortbay.jetty.load.generator.listeners.CollectorInformations;
 import org.mortbay.jetty.load.generator.listeners.ServerInfo;
 
@@ -11,6 +14,8 @@ public class RunInformations
 {
     private String buildId;
 
+    private String uuid;
+
     private String jettyVersion;
 
     private String timestampStr;
@@ -38,6 +43,33 @@ public class RunInformations
         this.transport = transport;
     }
 
+    /**
+     * Builds from the <code>_source</code> of a filtered load result document, only uuid, serverInfo, transport,
+     * collectorInformations and the loader loadConfigs numbers are read.
+     */
+    public RunInformations( JsonNode source )
+        throws JsonProcessingException
+    {
+        this( source.path( "serverInfo" ).path( "jettyVersion" ).asText() + ":" //
+                  + source.path( "serverInfo" ).path( "gitHash" ).asText(), //
+              JsonResponses.OBJECT_MAPPER.treeToValue( source.get( "collectorInformations" ),
+                                                       CollectorInformations.class ), //
+              StringUtils.lowerCase( source.path( "transport" ).textValue() ) );
+        this.uuid = source.path( "uuid" ).textValue();
+        this.serverInfo = JsonResponses.OBJECT_MAPPER.treeToValue( source.get( "serverInfo" ), ServerInfo.class );
+        this.jettyVersion = serverInfo.getJettyVersion();
+        for ( JsonNode loadConfig : source.path( "loadConfigs" ) )
+        {
+            if ( "LOADER".equals( loadConfig.path( "type" ).asText() ) )
+            {
+                this.estimatedQps = loadConfig.path( "instanceNumber" ).asInt() //
+                    * loadConfig.path( "resourceNumber" ).asInt() //
+                    * loadConfig.path( "resourceRate" ).asInt();
+                break;
+            }
+        }
+    }
+
     public String getTimestampStr()
     {
         return timestampStr;
@@ -53,6 +85,19 @@ public class RunInformations
         this.buildId = buildId;
     }
 
+    /**
+     * @return the uuid of the stored result, breaks the ties between results of the same start timestamp
+     */
+    public String getUuid()
+    {
+        return uuid;
+    }
+
+    public void setUuid( String uuid )
+    {
+        this.uuid = uuid;
+    }
+
     public String getJettyVersion()
     {
         return jettyVersion;
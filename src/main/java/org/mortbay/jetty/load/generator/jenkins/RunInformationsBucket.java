@@ -0,0 +1,124 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+/**
+ * Summary of the {@link RunInformations} of one version, transport and estimated qps within one time bucket,
+ * as aggregated by Elasticsearch.
+ */
+public class RunInformationsBucket
+{
+    private String jettyVersion;
+
+    private String transport;
+
+    private int estimatedQps;
+
+    // start of the bucket in ms
+    private long timeStamp;
+
+    // number of runs in the bucket
+    private long count;
+
+    // stats of the runs mean response time
+    private double minMean;
+
+    private double mean;
+
+    private double maxMean;
+
+    // median of the runs value50 and value90
+    private double value50;
+
+    private double value90;
+
+    public RunInformationsBucket( String jettyVersion, String transport, int estimatedQps, long timeStamp, long count,
+                                  double minMean, double mean, double maxMean, double value50, double value90 )
+    {
+        this.jettyVersion = jettyVersion;
+        this.transport = transport;
+        this.estimatedQps = estimatedQps;
+        this.timeStamp = timeStamp;
+        this.count = count;
+        this.minMean = minMean;
+        this.mean = mean;
+        this.maxMean = maxMean;
+        this.value50 = value50;
+        this.value90 = value90;
+    }
+
+    public String getJettyVersion()
+    {
+        return jettyVersion;
+    }
+
+    public String getTransport()
+    {
+        return transport;
+    }
+
+    public int getEstimatedQps()
+    {
+        return estimatedQps;
+    }
+
+    public long getTimeStamp()
+    {
+        return timeStamp;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getMinMean()
+    {
+        return minMean;
+    }
+
+    public double getMean()
+    {
+        return mean;
+    }
+
+    public double getMaxMean()
+    {
+        return maxMean;
+    }
+
+    public double getValue50()
+    {
+        return value50;
+    }
+
+    public double getValue90()
+    {
+        return value90;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RunInformationsBucket{" + "jettyVersion='" + jettyVersion + '\'' + ", transport='" + transport + '\''
+            + ", estimatedQps=" + estimatedQps + ", timeStamp=" + timeStamp + ", count=" + count + ", minMean="
+            + minMean + ", mean=" + mean + ", maxMean=" + maxMean + ", value50=" + value50 + ", value90=" + value90
+            + '}';
+    }
+}
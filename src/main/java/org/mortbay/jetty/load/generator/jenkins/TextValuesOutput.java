@@ -0,0 +1,101 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Historical pipe delimited output: <code>timestamp|method|path|status|size|responseTime|latencyTime</code>
+ */
+public class TextValuesOutput
+    extends ChannelValuesOutput
+{
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final ValuesDictionary dictionary;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder() //
+        .onMalformedInput( CodingErrorAction.REPLACE ) //
+        .onUnmappableCharacter( CodingErrorAction.REPLACE );
+
+    // only used by the consumer thread so reused for every line
+    private final StringBuilder line = new StringBuilder( 128 );
+
+    private char[] chars = new char[128];
+
+    private CharBuffer charBuffer = CharBuffer.wrap( chars );
+
+    public TextValuesOutput( Path path, ValuesDictionary dictionary )
+        throws IOException
+    {
+        super( path );
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @param outputStream closed with this output, see {@link Lz4BlockOutputStream}
+     */
+    public TextValuesOutput( OutputStream outputStream, ValuesDictionary dictionary )
+    {
+        super( outputStream );
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void write( Values values )
+        throws IOException
+    {
+        line.setLength( 0 );
+        line.append( values.getEventTimestamp() ).append( '|' ) //
+            .append( dictionary.method( values ) ).append( '|' ) //
+            .append( dictionary.path( values ) ).append( '|' ) //
+            .append( values.getStatus() ).append( '|' ) //
+            .append( values.getSize() ).append( '|' ) //
+            .append( values.getResponseTime() ).append( '|' ) //
+            .append( values.getLatencyTime() ) //
+            .append( LINE_SEPARATOR );
+
+        int length = line.length();
+        if ( chars.length < length )
+        {
+            chars = new char[length * 2];
+            charBuffer = CharBuffer.wrap( chars );
+        }
+        line.getChars( 0, length, chars, 0 );
+        charBuffer.clear();
+        charBuffer.limit( length );
+
+        // encoded straight into the batch buffer, drained when a long line does not fit
+        encoder.reset();
+        CoderResult result = encoder.encode( charBuffer, buffer, true );
+        while ( result.isOverflow() )
+        {
+            drain();
+            result = encoder.encode( charBuffer, buffer, true );
+        }
+    }
+
+}
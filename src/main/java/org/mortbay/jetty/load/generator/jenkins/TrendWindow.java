@@ -0,0 +1,233 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.util.List;
+
+/**
+ * Window of a trend endpoint, read from the request parameters:
+ * <ul>
+ * <li><code>from</code>, <code>to</code>: build numbers, inclusive, for the trends of builds</li>
+ * <li><code>since</code>, <code>until</code>: epoch milliseconds, inclusive</li>
+ * <li><code>limit</code>: number of entries, the most recent ones of the window are returned</li>
+ * <li><code>cursor</code>: value of the {@link #CURSOR_HEADER} of the previous response, to fetch the page of
+ * older entries</li>
+ * </ul>
+ * Entries are always returned in ascending order, the {@link #CURSOR_HEADER} is only set when older entries exist.
+ * For stored results the cursor is <code>timestamp_uuid</code>, see {@link #cursor(long, String)}, so results
+ * sharing the timestamp of the page boundary are neither skipped nor repeated.
+ */
+public class TrendWindow
+{
+
+    public static final String CURSOR_HEADER = "X-Trend-Cursor";
+
+    public static final int DEFAULT_LIMIT = 50;
+
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String CURSOR_KEY_SEPARATOR = "_";
+
+    private final long from;
+
+    private final long to;
+
+    private final long since;
+
+    private final long until;
+
+    private final int limit;
+
+    /**
+     * exclusive upper bound of the build number or timestamp, depending on the endpoint
+     */
+    private final long cursor;
+
+    /**
+     * uuid of the entry at the cursor timestamp, entries of the same timestamp are ordered by uuid,
+     * <code>null</code> if the cursor is exclusive on the timestamp only
+     */
+    private final String cursorKey;
+
+    public TrendWindow( long from, long to, long since, long until, int limit, long cursor )
+    {
+        this( from, to, since, until, limit, cursor, null );
+    }
+
+    public TrendWindow( long from, long to, long since, long until, int limit, long cursor, String cursorKey )
+    {
+        this.from = from;
+        this.to = to;
+        this.since = since;
+        this.until = until;
+        this.limit = limit > 0 ? Math.min( limit, MAX_LIMIT ) : DEFAULT_LIMIT;
+        this.cursor = cursor;
+        this.cursorKey = cursor == Long.MAX_VALUE ? null : StringUtils.defaultIfEmpty( cursorKey, null );
+    }
+
+    public static TrendWindow of( StaplerRequest req )
+    {
+        String cursor = req.getParameter( "cursor" );
+        return new TrendWindow( NumberUtils.toLong( req.getParameter( "from" ), 0 ), //
+                                NumberUtils.toLong( req.getParameter( "to" ), Long.MAX_VALUE ), //
+                                NumberUtils.toLong( req.getParameter( "since" ), 0 ), //
+                                NumberUtils.toLong( req.getParameter( "until" ), Long.MAX_VALUE ), //
+                                NumberUtils.toInt( req.getParameter( "limit" ), DEFAULT_LIMIT ), //
+                                NumberUtils.toLong( StringUtils.substringBefore( cursor, CURSOR_KEY_SEPARATOR ), //
+                                                    Long.MAX_VALUE ), //
+                                StringUtils.substringAfter( cursor, CURSOR_KEY_SEPARATOR ) );
+    }
+
+    /**
+     * @return the {@link #CURSOR_HEADER} value of a page of stored results starting with the given entry
+     */
+    public static String cursor( long timestamp, String uuid )
+    {
+        return uuid == null ? Long.toString( timestamp ) : timestamp + CURSOR_KEY_SEPARATOR + uuid;
+    }
+
+    /**
+     * @return the most recent entries, whenever they were recorded
+     */
+    public static TrendWindow latest( int limit )
+    {
+        return new TrendWindow( 0, Long.MAX_VALUE, 0, Long.MAX_VALUE, limit, Long.MAX_VALUE );
+    }
+
+    /**
+     * for the trends of builds, the cursor is a build number
+     */
+    public boolean acceptsBuild( long buildNumber, long timestamp )
+    {
+        return buildNumber >= from && buildNumber <= to && buildNumber < cursor && acceptsTimestamp( timestamp );
+    }
+
+    private boolean acceptsTimestamp( long timestamp )
+    {
+        return timestamp >= since && timestamp <= until;
+    }
+
+    /**
+     * for the trends of stored results, the cursor is a timestamp and an uuid
+     */
+    public boolean acceptsTime( long timestamp, String uuid )
+    {
+        return acceptsTimestamp( timestamp ) && isBeforeCursor( timestamp, uuid );
+    }
+
+    private boolean isBeforeCursor( long timestamp, String uuid )
+    {
+        if ( timestamp != cursor )
+        {
+            return timestamp < cursor;
+        }
+        return cursorKey != null && uuid != null && uuid.compareTo( cursorKey ) < 0;
+    }
+
+    /**
+     * @param ascending all the accepted entries in ascending order
+     * @return the most recent {@link #getLimit()} entries
+     */
+    public <T> List<T> page( List<T> ascending )
+    {
+        int size = ascending.size();
+        return size <= limit ? ascending : ascending.subList( size - limit, size );
+    }
+
+    public boolean hasMore( List<?> ascending )
+    {
+        return ascending.size() > limit;
+    }
+
+    /**
+     * @return the <code>filter</code> clause of an elasticsearch bool query restricting the field to the time
+     * window and the cursor, empty if there is no restriction. With an uuid in the cursor, the cursor timestamp
+     * is included and {@link #elasticSearchAfter()} skips the entries of the previous page.
+     */
+    public String elasticFilter( String field )
+    {
+        long upper = Math.min( until, cursor == Long.MAX_VALUE || cursorKey != null ? cursor : cursor - 1 );
+        if ( since <= 0 && upper == Long.MAX_VALUE )
+        {
+            return "";
+        }
+        StringBuilder range = new StringBuilder( ", \"filter\": { \"range\": { \"" ).append( field ).append( "\": { " );
+        if ( since > 0 )
+        {
+            range.append( "\"gte\": " ).append( since );
+        }
+        if ( upper != Long.MAX_VALUE )
+        {
+            range.append( since > 0 ? ", " : "" ).append( "\"lte\": " ).append( upper );
+        }
+        return range.append( " } } }" ).toString();
+    }
+
+    /**
+     * @return the <code>search_after</code> clause of a search sorted by descending timestamp then descending
+     * <code>uuid.keyword</code>, empty if the cursor has no uuid
+     */
+    public String elasticSearchAfter()
+    {
+        if ( cursorKey == null )
+        {
+            return "";
+        }
+        return ", \"search_after\": [ " + cursor + ", \"" + StringEscapeUtils.escapeJson( cursorKey ) + "\" ]";
+    }
+
+    public long getFrom()
+    {
+        return from;
+    }
+
+    public long getTo()
+    {
+        return to;
+    }
+
+    public long getSince()
+    {
+        return since;
+    }
+
+    public long getUntil()
+    {
+        return until;
+    }
+
+    public int getLimit()
+    {
+        return limit;
+    }
+
+    public long getCursor()
+    {
+        return cursor;
+    }
+
+    public String getCursorKey()
+    {
+        return cursorKey;
+    }
+}
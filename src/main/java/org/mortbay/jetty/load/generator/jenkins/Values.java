@@ -35,6 +35,11 @@ public class Values
 
     private String path;
 
+    /**
+     * {@link ValuesDictionary} id of the path, <code>-1</code> if not interned
+     */
+    private int pathId = -1;
+
     /**
      * the value in nano seconds
      */
@@ -47,6 +52,11 @@ public class Values
 
     private String method;
 
+    /**
+     * {@link ValuesDictionary} id of the method, <code>-1</code> if not interned
+     */
+    private int methodId = -1;
+
     private long size;
 
     private int status;
@@ -72,6 +82,22 @@ public class Values
         return this;
     }
 
+    public int getPathId()
+    {
+        return pathId;
+    }
+
+    public void setPathId( int pathId )
+    {
+        this.pathId = pathId;
+    }
+
+    public Values pathId( int pathId )
+    {
+        this.pathId = pathId;
+        return this;
+    }
+
     public long getResponseTime()
     {
         return responseTime;
@@ -120,6 +146,22 @@ public class Values
         return this;
     }
 
+    public int getMethodId()
+    {
+        return methodId;
+    }
+
+    public void setMethodId( int methodId )
+    {
+        this.methodId = methodId;
+    }
+
+    public Values methodId( int methodId )
+    {
+        this.methodId = methodId;
+        return this;
+    }
+
     public long getSize()
     {
         return size;
@@ -0,0 +1,129 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Interns {@link org.mortbay.jetty.load.generator.Resource} paths and methods to small integer ids, so the ring
+ * buffer, the binary outputs and the aggregations carry ints instead of Strings.
+ * Lookups are lock free, only the first registration of a value is synchronized.
+ * <code>null</code> is always mapped to <code>-1</code>.
+ */
+public class ValuesDictionary
+{
+
+    private final Namespace paths = new Namespace();
+
+    private final Namespace methods = new Namespace();
+
+    public int pathId( String path )
+    {
+        return paths.intern( path );
+    }
+
+    public int methodId( String method )
+    {
+        return methods.intern( method );
+    }
+
+    public String path( int id )
+    {
+        return paths.lookup( id );
+    }
+
+    public String method( int id )
+    {
+        return methods.lookup( id );
+    }
+
+    /**
+     * @return the path id of the values, interning its path if the id is not set
+     */
+    public int pathId( Values values )
+    {
+        return values.getPathId() >= 0 ? values.getPathId() : pathId( values.getPath() );
+    }
+
+    /**
+     * @return the method id of the values, interning its method if the id is not set
+     */
+    public int methodId( Values values )
+    {
+        return values.getMethodId() >= 0 ? values.getMethodId() : methodId( values.getMethod() );
+    }
+
+    public String path( Values values )
+    {
+        return values.getPath() != null ? values.getPath() : path( values.getPathId() );
+    }
+
+    public String method( Values values )
+    {
+        return values.getMethod() != null ? values.getMethod() : method( values.getMethodId() );
+    }
+
+    public int getPathCount()
+    {
+        return paths.values.size();
+    }
+
+    public int getMethodCount()
+    {
+        return methods.values.size();
+    }
+
+    private static class Namespace
+    {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+        private final List<String> values = new CopyOnWriteArrayList<>();
+
+        int intern( String value )
+        {
+            if ( value == null )
+            {
+                return -1;
+            }
+            Integer id = ids.get( value );
+            return id != null ? id : register( value );
+        }
+
+        private synchronized int register( String value )
+        {
+            Integer id = ids.get( value );
+            if ( id == null )
+            {
+                // published to values before ids so a visible id can always be looked up
+                id = values.size();
+                values.add( value );
+                ids.put( value, id );
+            }
+            return id;
+        }
+
+        String lookup( int id )
+        {
+            return id < 0 ? null : values.get( id );
+        }
+    }
+
+}
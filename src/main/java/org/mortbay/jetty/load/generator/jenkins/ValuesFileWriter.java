@@ -17,42 +17,304 @@
 
 package org.mortbay.jetty.load.generator.jenkins;
 
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.LifecycleAware;
+import com.lmax.disruptor.LiteBlockingWaitStrategy;
+import com.lmax.disruptor.LiteTimeoutBlockingWaitStrategy;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.TimeoutHandler;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.mortbay.jetty.load.generator.LoadGenerator;
 import org.mortbay.jetty.load.generator.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  *
  */
 public class ValuesFileWriter
-    implements Resource.NodeListener, Serializable, EventHandler<Values>, EventFactory<Values>,
-    LoadGenerator.EndListener
+    implements Resource.NodeListener, Serializable, EventHandler<Values>, EventFactory<Values>, TimeoutHandler,
+    LifecycleAware, LoadGenerator.EndListener
 {
 
+    public enum Format
+    {
+        /**
+         * one pipe delimited line per request
+         */
+        TEXT,
+        /**
+         * dictionary entries and fixed width records, see {@link BinaryValuesCodec}
+         */
+        BINARY,
+        /**
+         * same layout as {@link #BINARY} appended to preallocated memory mapped segments,
+         * see {@link MappedValuesOutput}
+         */
+        MAPPED,
+        /**
+         * no sample is kept, response time histograms are written every interval,
+         * see {@link HistogramLogValuesOutput}
+         */
+        HISTOGRAM_LOG
+    }
+
+    /**
+     * how the consumer thread waits for events, see the disruptor documentation.
+     * Only the blocking strategies wake the consumer up to flush during quiet periods.
+     */
+    public enum WaitStrategyType
+    {
+        /**
+         * lock and condition, lowest cpu usage
+         */
+        BLOCKING,
+        LITE_BLOCKING,
+        SLEEPING,
+        /**
+         * spins then yields, for dedicated agents with a spare core
+         */
+        YIELDING,
+        /**
+         * burns a full core for the lowest latency
+         */
+        BUSY_SPIN;
+
+        /**
+         * @param flushInterval milliseconds, <code>0</code> to never time out
+         */
+        public WaitStrategy newWaitStrategy( long flushInterval )
+        {
+            switch ( this )
+            {
+                case LITE_BLOCKING:
+                    return flushInterval > 0
+                        ? new LiteTimeoutBlockingWaitStrategy( flushInterval, TimeUnit.MILLISECONDS )
+                        : new LiteBlockingWaitStrategy();
+                case SLEEPING:
+                    return new SleepingWaitStrategy();
+                case YIELDING:
+                    return new YieldingWaitStrategy();
+                case BUSY_SPIN:
+                    return new BusySpinWaitStrategy();
+                default:
+                    return flushInterval > 0
+                        ? new TimeoutBlockingWaitStrategy( flushInterval, TimeUnit.MILLISECONDS )
+                        : new BlockingWaitStrategy();
+            }
+        }
+    }
+
+    /**
+     * what a load generator thread does with a completed request when the consumer falls behind
+     */
+    public enum BackpressurePolicy
+    {
+        /**
+         * wait for a free slot, which slows down the generated load, counted as blocked
+         */
+        BLOCK,
+        /**
+         * never wait, events finding the ring buffer full are counted as dropped
+         */
+        DROP,
+        /**
+         * never wait and only record one event out of {@link #sampleRate(int)}, the others are counted as
+         * sampled out
+         */
+        SAMPLE
+    }
+
+    /**
+     * Daemon threads with a fixed name and priority, serializable so it can be part of the writer configuration.
+     */
+    public static class ConsumerThreadFactory
+        implements ThreadFactory, Serializable
+    {
+        private final String name;
+
+        private final int priority;
+
+        public ConsumerThreadFactory( String name, int priority )
+        {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, name );
+            thread.setDaemon( true );
+            thread.setPriority( priority );
+            return thread;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( ValuesFileWriter.class );
+
+    private static final ThreadFactory DEFAULT_THREAD_FACTORY =
+        new ConsumerThreadFactory( "loadgenerator-values-writer", Thread.NORM_PRIORITY );
+
+    /**
+     * translators do not capture anything so publishing an event does not allocate,
+     * slots only carry the {@link ValuesDictionary} ids
+     */
+    private static final EventTranslatorTwoArg<Values, Resource.Info, ValuesDictionary> INFO_TRANSLATOR =
+        ( event, sequence, info, dictionary ) -> event.eventTimestamp( info.getRequestTime() ) //
+            .method( null ) //
+            .methodId( dictionary.methodId( info.getResource().getMethod() ) ) //
+            .path( null ) //
+            .pathId( dictionary.pathId( info.getResource().getPath() ) ) //
+            .status( info.getStatus() ) //
+            .size( 0 ) //
+            .latencyTime( info.getLatencyTime() ) //
+            .responseTime( info.getResponseTime() );
+
+    private static final EventTranslatorTwoArg<Values, Values, ValuesDictionary> VALUES_TRANSLATOR =
+        ( event, sequence, values, dictionary ) -> event.eventTimestamp( values.getEventTimestamp() ) //
+            .method( null ) //
+            .methodId( dictionary.methodId( values ) ) //
+            .path( null ) //
+            .pathId( dictionary.pathId( values ) ) //
+            .responseTime( values.getResponseTime() ) //
+            .status( values.getStatus() ) //
+            .latencyTime( values.getLatencyTime() ) //
+            .size( values.getSize() );
+
     private final String filePath;
 
-    private transient BufferedWriter bufferedWriter;
+    private final Format format;
+
+    private int segmentSize = MappedValuesOutput.DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * {@link Format#TEXT} and {@link Format#BINARY} files written through a {@link Lz4BlockOutputStream}
+     */
+    private boolean compressed;
+
+    private WaitStrategyType waitStrategyType = WaitStrategyType.BLOCKING;
+
+    /**
+     * milliseconds between two {@link ValuesOutput#flush()}, <code>0</code> to only flush at the end
+     */
+    private long flushInterval = 1000;
+
+    /**
+     * milliseconds {@link #onEnd(LoadGenerator)} waits for the consumer to write the events still in the ring buffer
+     */
+    private long drainTimeout = 30000;
+
+    /**
+     * {@link ProducerType#MULTI} as soon as more than one load generator thread publishes
+     */
+    private ProducerType producerType = ProducerType.MULTI;
+
+    /**
+     * must be a power of 2
+     */
+    private int ringBufferSize = Integer.getInteger( "loadgenerator.ringbuffer.size", 2048 );
+
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+    private int sampleRate = 1;
+
+    /**
+     * micro seconds, higher response or latency times are recorded as this value
+     */
+    private long histogramHighestTrackableValue = TimeUnit.MINUTES.toMicros( 1 );
+
+    private int histogramSignificantDigits = 2;
+
+    /**
+     * seconds between two histograms of {@link Format#HISTOGRAM_LOG}
+     */
+    private int histogramLogInterval = 5;
+
+    /**
+     * serialized with the rest of the configuration so the recorder started by {@link #readResolve()} uses it,
+     * must then be {@link Serializable}, e.g. {@link ConsumerThreadFactory}
+     */
+    private ThreadFactory threadFactory;
+
+    private transient ValuesDictionary dictionary;
+
+    private transient ValuesOutput valuesOutput;
+
+    private transient Disruptor<Values> disruptor;
 
     private transient RingBuffer<Values> ringBuffer;
 
+    /**
+     * <code>false</code> once the recorder is stopping, events published after are counted as dropped
+     */
+    private transient volatile boolean running;
+
+    /**
+     * released by the consumer thread once it has closed the output
+     */
+    private transient CountDownLatch consumerStopped;
+
+    private transient long unconsumedCount;
+
+    /**
+     * lowest remaining capacity seen by the consumer, tells whether the ring buffer is big enough
+     */
+    private transient volatile long minRemainingCapacity;
+
+    private transient LongAdder blockedCount;
+
+    private transient LongAdder droppedCount;
+
+    private transient LongAdder sampledOutCount;
+
+    /**
+     * only updated by the consumer thread
+     */
+    private transient volatile long recordedCount;
+
+    private transient ValuesHistograms histograms;
+
+    /**
+     * {@link System#nanoTime()} of the last flush, only used by the consumer thread
+     */
+    private transient long lastFlush;
+
     public ValuesFileWriter( Path path )
+    {
+        this( path, Format.TEXT );
+    }
+
+    public ValuesFileWriter( Path path, Format format )
     {
         try
         {
             this.filePath = path.toAbsolutePath().toString();
-            this.bufferedWriter = Files.newBufferedWriter( path );
+            this.format = format == null ? Format.TEXT : format;
+            this.dictionary = new ValuesDictionary();
+            this.valuesOutput = openOutput();
         }
         catch ( IOException e )
         {
@@ -61,100 +323,560 @@ public class ValuesFileWriter
 
     }
 
+    public Format getFormat()
+    {
+        return format;
+    }
+
+    public ValuesDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    public int getSegmentSize()
+    {
+        return segmentSize;
+    }
+
+    /**
+     * @param segmentSize size in bytes of each preallocated segment when using {@link Format#MAPPED}
+     */
+    public ValuesFileWriter segmentSize( int segmentSize )
+    {
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    public boolean isCompressed()
+    {
+        return compressed;
+    }
+
+    /**
+     * @param compressed compress {@link Format#TEXT} or {@link Format#BINARY} files on the consumer thread,
+     * ignored by the other formats
+     */
+    public ValuesFileWriter compressed( boolean compressed )
+    {
+        this.compressed = compressed;
+        return this;
+    }
+
+    public WaitStrategyType getWaitStrategyType()
+    {
+        return waitStrategyType;
+    }
+
+    public ValuesFileWriter waitStrategyType( WaitStrategyType waitStrategyType )
+    {
+        this.waitStrategyType = waitStrategyType;
+        return this;
+    }
+
+    public long getFlushInterval()
+    {
+        return flushInterval;
+    }
+
+    /**
+     * @param flushInterval milliseconds between two flushes of the output, <code>0</code> to only flush at the end
+     */
+    public ValuesFileWriter flushInterval( long flushInterval )
+    {
+        this.flushInterval = Math.max( 0, flushInterval );
+        return this;
+    }
+
+    public long getDrainTimeout()
+    {
+        return drainTimeout;
+    }
+
+    /**
+     * @param drainTimeout milliseconds to wait at the end of a run for the events still in the ring buffer
+     */
+    public ValuesFileWriter drainTimeout( long drainTimeout )
+    {
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
+    public ProducerType getProducerType()
+    {
+        return producerType;
+    }
+
+    public ValuesFileWriter producerType( ProducerType producerType )
+    {
+        this.producerType = producerType;
+        return this;
+    }
+
+    public int getRingBufferSize()
+    {
+        return ringBufferSize;
+    }
+
+    /**
+     * @param ringBufferSize number of slots, must be a power of 2
+     */
+    public ValuesFileWriter ringBufferSize( int ringBufferSize )
+    {
+        if ( Integer.bitCount( ringBufferSize ) != 1 )
+        {
+            throw new IllegalArgumentException( "ringBufferSize must be a power of 2: " + ringBufferSize );
+        }
+        this.ringBufferSize = ringBufferSize;
+        return this;
+    }
+
+    /**
+     * Applied when the recorder starts, when deserialized or on {@link #reset()}, so must be set before the writer
+     * is sent where it is used.
+     */
+    public ValuesFileWriter threadFactory( ThreadFactory threadFactory )
+    {
+        if ( this.disruptor != null )
+        {
+            LOGGER.warn( "values recorder already started, the thread factory is used from the next reset" );
+        }
+        this.threadFactory = threadFactory;
+        return this;
+    }
+
+    public BackpressurePolicy getBackpressurePolicy()
+    {
+        return backpressurePolicy;
+    }
+
+    public ValuesFileWriter backpressurePolicy( BackpressurePolicy backpressurePolicy )
+    {
+        this.backpressurePolicy = backpressurePolicy;
+        return this;
+    }
+
+    public int getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate with {@link BackpressurePolicy#SAMPLE}, record one event out of sampleRate
+     */
+    public ValuesFileWriter sampleRate( int sampleRate )
+    {
+        if ( sampleRate < 1 )
+        {
+            throw new IllegalArgumentException( "sampleRate must be positive: " + sampleRate );
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public long getHistogramHighestTrackableValue()
+    {
+        return histogramHighestTrackableValue;
+    }
+
+    /**
+     * @param histogramHighestTrackableValue in micro seconds
+     */
+    public ValuesFileWriter histogramHighestTrackableValue( long histogramHighestTrackableValue )
+    {
+        this.histogramHighestTrackableValue = histogramHighestTrackableValue;
+        return this;
+    }
+
+    public int getHistogramSignificantDigits()
+    {
+        return histogramSignificantDigits;
+    }
+
+    public ValuesFileWriter histogramSignificantDigits( int histogramSignificantDigits )
+    {
+        this.histogramSignificantDigits = histogramSignificantDigits;
+        return this;
+    }
+
+    public int getHistogramLogInterval()
+    {
+        return histogramLogInterval;
+    }
+
+    /**
+     * @param histogramLogInterval seconds between two histograms of {@link Format#HISTOGRAM_LOG}
+     */
+    public ValuesFileWriter histogramLogInterval( int histogramLogInterval )
+    {
+        this.histogramLogInterval = histogramLogInterval;
+        return this;
+    }
+
+    public ValuesHistograms getHistograms()
+    {
+        return histograms;
+    }
+
+    /**
+     * @return the number of free slots in the ring buffer right now, <code>-1</code> if not started
+     */
+    public long getRemainingCapacity()
+    {
+        return ringBuffer == null ? -1 : ringBuffer.remainingCapacity();
+    }
+
+    /**
+     * @return the lowest number of free slots seen since the start of the run, <code>-1</code> if not started
+     */
+    public long getMinRemainingCapacity()
+    {
+        return ringBuffer == null ? -1 : minRemainingCapacity;
+    }
+
+    protected ValuesOutput openOutput()
+        throws IOException
+    {
+        Path path = Paths.get( this.filePath );
+        if ( compressed && ( format == Format.BINARY || format == Format.TEXT ) )
+        {
+            OutputStream outputStream = new Lz4BlockOutputStream( Files.newOutputStream( path ) );
+            return format == Format.BINARY
+                ? new BinaryValuesOutput( outputStream, dictionary )
+                : new TextValuesOutput( outputStream, dictionary );
+        }
+        if ( format == Format.BINARY )
+        {
+            return new BinaryValuesOutput( path, dictionary );
+        }
+        if ( format == Format.MAPPED )
+        {
+            return new MappedValuesOutput( path, segmentSize > 0 //
+                ? segmentSize : MappedValuesOutput.DEFAULT_SEGMENT_SIZE, dictionary );
+        }
+        if ( format == Format.HISTOGRAM_LOG )
+        {
+            return new HistogramLogValuesOutput( path, dictionary, //
+                                                 TimeUnit.SECONDS.toMillis( Math.max( 1, histogramLogInterval ) ), //
+                                                 histogramHighestTrackableValue > 1
+                                                     ? histogramHighestTrackableValue
+                                                     : TimeUnit.MINUTES.toMicros( 1 ), //
+                                                 Math.max( 1, histogramSignificantDigits ) );
+        }
+        return new TextValuesOutput( path, dictionary );
+    }
+
     protected void onValues( Values values )
     {
-        this.ringBuffer.publishEvent( ( event, sequence ) -> //
-                event.eventTimestamp( values.getEventTimestamp() ) //
-                    .method( values.getMethod() ) //
-                    .path( values.getPath() ) //
-                    .responseTime( values.getResponseTime() ) //
-                    .status( values.getStatus() ) //
-                    .latencyTime( values.getLatencyTime() ) //
-                    .size( values.getSize() ) );
+        publish( VALUES_TRANSLATOR, values );
     }
 
     @Override
     public void onResourceNode( Resource.Info info )
     {
-        onValues( new Values() //
-                      .eventTimestamp( info.getRequestTime() ) //
-                      .method( info.getResource().getMethod() ) //
-                      .path( info.getResource().getPath() ) //
-                      .status( info.getStatus() ) //
-                      .latencyTime( info.getLatencyTime() ) //
-                      .responseTime( info.getResponseTime() ) );
+        // fields are copied straight into the preallocated ring buffer slot
+        publish( INFO_TRANSLATOR, info );
+    }
+
+    private <A> void publish( EventTranslatorTwoArg<Values, A, ValuesDictionary> translator, A arg )
+    {
+        if ( !running )
+        {
+            // nobody would consume it, and with BLOCK a full ring buffer would block forever
+            droppedCount.increment();
+            return;
+        }
+        switch ( backpressurePolicy )
+        {
+            case DROP:
+                if ( !this.ringBuffer.tryPublishEvent( translator, arg, dictionary ) )
+                {
+                    droppedCount.increment();
+                }
+                break;
+            case SAMPLE:
+                if ( sampleRate > 1 && ThreadLocalRandom.current().nextInt( sampleRate ) != 0 )
+                {
+                    sampledOutCount.increment();
+                }
+                else if ( !this.ringBuffer.tryPublishEvent( translator, arg, dictionary ) )
+                {
+                    droppedCount.increment();
+                }
+                break;
+            default:
+                if ( !this.ringBuffer.hasAvailableCapacity( 1 ) )
+                {
+                    blockedCount.increment();
+                }
+                this.ringBuffer.publishEvent( translator, arg, dictionary );
+        }
     }
 
     public Object readResolve()
     {
         try
         {
-            this.bufferedWriter = Files.newBufferedWriter( Paths.get( this.filePath ) );
+            // the output opened by the constructor when called on the instance which was not serialized
+            closeOutput();
+            this.dictionary = new ValuesDictionary();
+            this.valuesOutput = openOutput();
 
-            // Executor that will be used to construct new threads for consumers
-            ExecutorService executor = Executors.newCachedThreadPool();
+            // objects created from an older serialized form
+            if ( this.waitStrategyType == null )
+            {
+                this.waitStrategyType = WaitStrategyType.BLOCKING;
+            }
+            if ( this.producerType == null )
+            {
+                this.producerType = ProducerType.MULTI;
+            }
+            if ( this.ringBufferSize <= 0 )
+            {
+                this.ringBufferSize = Integer.getInteger( "loadgenerator.ringbuffer.size", 2048 );
+            }
+            if ( this.backpressurePolicy == null )
+            {
+                this.backpressurePolicy = BackpressurePolicy.BLOCK;
+            }
+            if ( this.sampleRate < 1 )
+            {
+                this.sampleRate = 1;
+            }
+            if ( this.histogramHighestTrackableValue < 2 )
+            {
+                this.histogramHighestTrackableValue = TimeUnit.MINUTES.toMicros( 1 );
+            }
+            if ( this.histogramSignificantDigits < 1 )
+            {
+                this.histogramSignificantDigits = 2;
+            }
+            if ( this.drainTimeout <= 0 )
+            {
+                this.drainTimeout = 30000;
+            }
+            resetCounters();
+            start();
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException( e.getMessage(), e );
+        }
+        return this;
+    }
 
-            // Specify the size of the ring buffer, must be power of 2.
-            int bufferSize = Integer.getInteger( "loadgenerator.ringbuffer.size", 2048 );
+    private void closeOutput()
+    {
+        if ( this.valuesOutput != null && this.disruptor == null )
+        {
+            try
+            {
+                this.valuesOutput.close();
+            }
+            catch ( IOException e )
+            {
+                LOGGER.warn( "cannot close values file {}: {}", filePath, e.getMessage() );
+            }
+            this.valuesOutput = null;
+        }
+    }
 
-            // Construct the Disruptor
-            Disruptor<Values> disruptor = new Disruptor<>( this, bufferSize, executor );
+    private void start()
+    {
+        // Construct the Disruptor
+        Disruptor<Values> disruptor = new Disruptor<>( this, ringBufferSize, //
+                                                       threadFactory != null
+                                                           ? threadFactory
+                                                           : DEFAULT_THREAD_FACTORY, //
+                                                       producerType, //
+                                                       waitStrategyType.newWaitStrategy( flushInterval ) );
 
-            // Connect the handler
-            disruptor.handleEventsWith( this );
+        // Connect the handler
+        disruptor.handleEventsWith( this );
 
-            // Start the Disruptor, starts all threads running
-            disruptor.start();
+        // assigned before the consumer thread starts as it reads the cursor
+        this.ringBuffer = disruptor.getRingBuffer();
+        this.consumerStopped = new CountDownLatch( 1 );
+        this.disruptor = disruptor;
+        this.running = true;
 
-            this.ringBuffer = disruptor.getRingBuffer();
+        // Start the Disruptor, starts all threads running
+        disruptor.start();
+    }
 
+    /**
+     * Waits until every published event has been consumed, at most {@link #drainTimeout}, then stops the consumer
+     * thread which closes the output.
+     */
+    private void stop()
+        throws IOException
+    {
+        this.running = false;
+        Disruptor<Values> disruptor = this.disruptor;
+        if ( disruptor == null )
+        {
+            // never started or already stopped
+            this.valuesOutput.close();
+            return;
         }
-        catch ( Exception e )
+        this.disruptor = null;
+        try
         {
-            throw new RuntimeException( e.getMessage(), e );
+            disruptor.shutdown( drainTimeout, TimeUnit.MILLISECONDS );
         }
-        return this;
+        catch ( TimeoutException e )
+        {
+            LOGGER.warn( "values recorder not drained after {} ms, stop it anyway", drainTimeout );
+            disruptor.halt();
+        }
+        try
+        {
+            if ( !consumerStopped.await( drainTimeout, TimeUnit.MILLISECONDS ) )
+            {
+                LOGGER.warn( "values recorder consumer thread still running after {} ms", drainTimeout );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        this.unconsumedCount = ringBuffer.getCursor() - disruptor.getSequenceValueFor( this );
     }
 
     @Override
-    public void onEvent( Values values, long l, boolean b )
+    public void onEvent( Values values, long sequence, boolean endOfBatch )
         throws Exception
     {
         try
         {
-            StringBuilder sb = new StringBuilder( 128 ) //
-                .append( values.getEventTimestamp() ).append( '|' ) //
-                .append( values.getMethod() ).append( '|' ) //
-                .append( values.getPath() ).append( '|' ) //
-                .append( values.getStatus() ).append( '|' ) //
-                .append( values.getSize() ).append( '|' ) //
-                .append( values.getResponseTime() ).append( '|' ) //
-                .append( values.getLatencyTime() );
+            this.valuesOutput.write( values );
+            this.histograms.record( values );
+            recordedCount++;
+            if ( endOfBatch )
+            {
+                // the whole batch goes to the file in one write
+                this.valuesOutput.endOfBatch();
+                flushIfDue();
+                long remaining = ringBufferSize - ( ringBuffer.getCursor() - sequence );
+                if ( remaining < minRemainingCapacity )
+                {
+                    minRemainingCapacity = remaining;
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "cannot write values to {}: {}", filePath, e.getMessage(), e );
+        }
+    }
 
-            this.bufferedWriter.write( sb.toString() );
-            this.bufferedWriter.newLine();
+
+    @Override
+    public void onStart()
+    {
+        // no op
+    }
+
+    /**
+     * Called on the consumer thread once it has stopped, so the output is only ever used by this thread.
+     */
+    @Override
+    public void onShutdown()
+    {
+        try
+        {
+            this.valuesOutput.close();
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "cannot close values file {}: {}", filePath, e.getMessage() );
+        }
+        finally
+        {
+            consumerStopped.countDown();
+        }
+    }
+
+    /**
+     * Called by the disruptor when no event has been published during the flush interval.
+     */
+    @Override
+    public void onTimeout( long sequence )
+    {
+        try
+        {
+            flushIfDue();
         }
         catch ( IOException e )
         {
-            e.printStackTrace();
+            LOGGER.warn( "cannot flush values file {}: {}", filePath, e.getMessage() );
         }
     }
 
+    private void flushIfDue()
+        throws IOException
+    {
+        long now = System.nanoTime();
+        if ( flushInterval > 0 && now - lastFlush >= TimeUnit.MILLISECONDS.toNanos( flushInterval ) )
+        {
+            this.valuesOutput.flush();
+            lastFlush = now;
+        }
+    }
 
     public void reset()
     {
         try
         {
             this.onEnd( null );
-            this.bufferedWriter = Files.newBufferedWriter( Paths.get( this.filePath ) );
+            this.valuesOutput = openOutput();
+            resetCounters();
+            start();
         }
         catch ( IOException e )
         {
-            e.printStackTrace();
+            LOGGER.error( "cannot reset values file {}: {}", filePath, e.getMessage() );
             throw new RuntimeException( e.getMessage(), e );
         }
     }
 
+    private void resetCounters()
+    {
+        this.blockedCount = new LongAdder();
+        this.droppedCount = new LongAdder();
+        this.sampledOutCount = new LongAdder();
+        this.recordedCount = 0;
+        this.unconsumedCount = 0;
+        this.minRemainingCapacity = ringBufferSize;
+        this.lastFlush = System.nanoTime();
+        this.histograms = new ValuesHistograms( histogramHighestTrackableValue, histogramSignificantDigits );
+    }
+
+    /**
+     * @return the counters and percentiles of the current run, written next to the values file by
+     * {@link #onEnd(LoadGenerator)}
+     */
+    public ValuesRunSummary getRunSummary()
+    {
+        ValuesRunSummary summary = new ValuesRunSummary();
+        summary.setFormat( format.name() );
+        summary.setBackpressurePolicy( backpressurePolicy.name() );
+        summary.setRecordedCount( recordedCount );
+        summary.setBlockedCount( blockedCount == null ? 0 : blockedCount.sum() );
+        summary.setDroppedCount( droppedCount == null ? 0 : droppedCount.sum() );
+        summary.setSampledOutCount( sampledOutCount == null ? 0 : sampledOutCount.sum() );
+        summary.setUnconsumedCount( unconsumedCount );
+        summary.setRingBufferSize( ringBufferSize );
+        summary.setMinRemainingCapacity( getMinRemainingCapacity() );
+        if ( histograms != null )
+        {
+            summary.setResponseTime( ValuesStatistics.of( histograms.getResponseTime() ) );
+            summary.setLatencyTime( ValuesStatistics.of( histograms.getLatencyTime() ) );
+            summary.setResponseTimePerPath( histograms.getResponseTimePerPath( dictionary ) );
+            summary.setLatencyTimePerPath( histograms.getLatencyTimePerPath( dictionary ) );
+        }
+        return summary;
+    }
+
     @Override
     public Values newInstance()
     {
@@ -167,14 +889,20 @@ public class ValuesFileWriter
     {
         try
         {
-            this.bufferedWriter.flush();
-            this.bufferedWriter.close();
+            stop();
+            ValuesRunSummary summary = getRunSummary();
+            summary.write( ValuesRunSummary.summaryPath( Paths.get( this.filePath ) ) );
+            if ( !summary.isMeasurementValid() )
+            {
+                LOGGER.warn( "recorder could not keep up, measurement is not valid: {}", summary );
+            }
+            LOGGER.info( "stop loadGenerator, {} events flushed to {}, ring buffer size {}, min remaining capacity {}",
+                         summary.getRecordedCount(), filePath, ringBufferSize, summary.getMinRemainingCapacity() );
         }
         catch ( IOException e )
         {
             throw new RuntimeException( e.getMessage(), e );
         }
-        System.out.println( "stop loadGenerator" );
     }
 
 }
@@ -0,0 +1,122 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response and latency time histograms, global and per path, fed by the {@link ValuesFileWriter} consumer thread.
+ * Values are recorded in micro seconds and clamped to the highest trackable value so the memory used only
+ * depends on the number of paths, not on the length of the run.
+ */
+public class ValuesHistograms
+{
+
+    private final long highestTrackableValue;
+
+    private final int numberOfSignificantValueDigits;
+
+    private final Histogram responseTime;
+
+    private final Histogram latencyTime;
+
+    /**
+     * indexed by {@link ValuesDictionary} path id
+     */
+    private final List<Histogram> pathResponseTimes = new ArrayList<>();
+
+    private final List<Histogram> pathLatencyTimes = new ArrayList<>();
+
+    public ValuesHistograms( long highestTrackableValue, int numberOfSignificantValueDigits )
+    {
+        this.highestTrackableValue = highestTrackableValue;
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        this.responseTime = newHistogram();
+        this.latencyTime = newHistogram();
+    }
+
+    private Histogram newHistogram()
+    {
+        return new Histogram( highestTrackableValue, numberOfSignificantValueDigits );
+    }
+
+    public void record( Values values )
+    {
+        long responseTimeValue = toMicros( values.getResponseTime() );
+        long latencyTimeValue = toMicros( values.getLatencyTime() );
+        responseTime.recordValue( responseTimeValue );
+        latencyTime.recordValue( latencyTimeValue );
+
+        int pathId = values.getPathId();
+        if ( pathId >= 0 )
+        {
+            while ( pathResponseTimes.size() <= pathId )
+            {
+                pathResponseTimes.add( newHistogram() );
+                pathLatencyTimes.add( newHistogram() );
+            }
+            pathResponseTimes.get( pathId ).recordValue( responseTimeValue );
+            pathLatencyTimes.get( pathId ).recordValue( latencyTimeValue );
+        }
+    }
+
+    private long toMicros( long nanos )
+    {
+        return Math.max( 0, Math.min( TimeUnit.NANOSECONDS.toMicros( nanos ), highestTrackableValue ) );
+    }
+
+    public Histogram getResponseTime()
+    {
+        return responseTime;
+    }
+
+    public Histogram getLatencyTime()
+    {
+        return latencyTime;
+    }
+
+    public Map<String, ValuesStatistics> getResponseTimePerPath( ValuesDictionary dictionary )
+    {
+        return perPath( pathResponseTimes, dictionary );
+    }
+
+    public Map<String, ValuesStatistics> getLatencyTimePerPath( ValuesDictionary dictionary )
+    {
+        return perPath( pathLatencyTimes, dictionary );
+    }
+
+    private static Map<String, ValuesStatistics> perPath( List<Histogram> histograms, ValuesDictionary dictionary )
+    {
+        Map<String, ValuesStatistics> perPath = new LinkedHashMap<>();
+        for ( int pathId = 0; pathId < histograms.size(); pathId++ )
+        {
+            if ( histograms.get( pathId ).getTotalCount() > 0 )
+            {
+                perPath.put( dictionary.path( pathId ), ValuesStatistics.of( histograms.get( pathId ) ) );
+            }
+        }
+        return perPath;
+    }
+
+}
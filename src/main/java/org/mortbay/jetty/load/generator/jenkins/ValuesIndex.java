@@ -0,0 +1,346 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sparse index of a {@link ValuesFileWriter.Format#BINARY} values file, written next to it (see
+ * {@link #indexPath(Path)}). For each block of about {@link #DEFAULT_BLOCK_SIZE} bytes it keeps the offset, the
+ * timestamp range and the path ids found in the block, plus the whole dictionary so any block can be decoded on
+ * its own, see {@link IndexedValuesReader}.
+ */
+public class ValuesIndex
+{
+
+    /**
+     * "LGI" followed by the format version
+     */
+    public static final int MAGIC = 0x4C474901;
+
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    private final int blockSize;
+
+    private final List<String> paths = new ArrayList<>();
+
+    private final List<String> methods = new ArrayList<>();
+
+    private final List<Block> blocks = new ArrayList<>();
+
+    // block being built
+    private long blockStart = -1;
+
+    private int blockRecords;
+
+    private long blockMinTimestamp;
+
+    private long blockMaxTimestamp;
+
+    private final BitSet blockPaths = new BitSet();
+
+    public ValuesIndex()
+    {
+        this( DEFAULT_BLOCK_SIZE );
+    }
+
+    public ValuesIndex( int blockSize )
+    {
+        this.blockSize = blockSize;
+    }
+
+    public static Path indexPath( Path valuesPath )
+    {
+        return valuesPath.resolveSibling( valuesPath.getFileName() + ".idx" );
+    }
+
+    /**
+     * Must be called with the file offset of every entry or record about to be written, a new block is started
+     * there if the current one is big enough.
+     */
+    public void mark( long offset )
+    {
+        if ( blockStart < 0 )
+        {
+            blockStart = offset;
+        }
+        else if ( offset - blockStart >= blockSize && blockRecords > 0 )
+        {
+            closeBlock( offset );
+        }
+    }
+
+    public void record( long timestamp, int pathId )
+    {
+        if ( blockRecords == 0 || timestamp < blockMinTimestamp )
+        {
+            blockMinTimestamp = timestamp;
+        }
+        if ( blockRecords == 0 || timestamp > blockMaxTimestamp )
+        {
+            blockMaxTimestamp = timestamp;
+        }
+        if ( pathId >= 0 )
+        {
+            blockPaths.set( pathId );
+        }
+        blockRecords++;
+    }
+
+    /**
+     * @param end file offset right after the last record
+     */
+    public void finish( long end )
+    {
+        if ( blockStart >= 0 && end > blockStart )
+        {
+            closeBlock( end );
+        }
+        blockStart = -1;
+    }
+
+    private void closeBlock( long end )
+    {
+        blocks.add( new Block( blockStart, (int) ( end - blockStart ), blockRecords, blockMinTimestamp, //
+                               blockMaxTimestamp, blockPaths.stream().toArray() ) );
+        blockStart = end;
+        blockRecords = 0;
+        blockPaths.clear();
+    }
+
+    public void path( int id, String path )
+    {
+        set( paths, id, path );
+    }
+
+    public void method( int id, String method )
+    {
+        set( methods, id, method );
+    }
+
+    private static void set( List<String> dictionary, int id, String value )
+    {
+        while ( dictionary.size() <= id )
+        {
+            dictionary.add( null );
+        }
+        dictionary.set( id, value );
+    }
+
+    public String path( int id )
+    {
+        return id >= 0 && id < paths.size() ? paths.get( id ) : null;
+    }
+
+    public String method( int id )
+    {
+        return id >= 0 && id < methods.size() ? methods.get( id ) : null;
+    }
+
+    /**
+     * @return the id of the path in this file, <code>-1</code> if it is not there
+     */
+    public int pathId( String path )
+    {
+        return paths.indexOf( path );
+    }
+
+    public List<Block> getBlocks()
+    {
+        return Collections.unmodifiableList( blocks );
+    }
+
+    public static ValuesIndex read( Path path )
+        throws IOException
+    {
+        try (DataInputStream input = new DataInputStream( new BufferedInputStream( Files.newInputStream( path ) ) ))
+        {
+            int magic = input.readInt();
+            if ( magic != MAGIC )
+            {
+                throw new IOException( "not a values index file, magic: " + Integer.toHexString( magic ) );
+            }
+            ValuesIndex index = new ValuesIndex( input.readInt() );
+            readDictionary( input, index.paths );
+            readDictionary( input, index.methods );
+            int blockCount = input.readInt();
+            for ( int i = 0; i < blockCount; i++ )
+            {
+                long offset = input.readLong();
+                int length = input.readInt();
+                int recordCount = input.readInt();
+                long minTimestamp = input.readLong();
+                long maxTimestamp = input.readLong();
+                int[] pathIds = new int[input.readInt()];
+                for ( int j = 0; j < pathIds.length; j++ )
+                {
+                    pathIds[j] = input.readInt();
+                }
+                index.blocks.add( new Block( offset, length, recordCount, minTimestamp, maxTimestamp, pathIds ) );
+            }
+            return index;
+        }
+    }
+
+    public void write( Path path )
+        throws IOException
+    {
+        try (DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream( Files.newOutputStream( path ) ) ))
+        {
+            output.writeInt( MAGIC );
+            output.writeInt( blockSize );
+            writeDictionary( output, paths );
+            writeDictionary( output, methods );
+            output.writeInt( blocks.size() );
+            for ( Block block : blocks )
+            {
+                output.writeLong( block.offset );
+                output.writeInt( block.length );
+                output.writeInt( block.recordCount );
+                output.writeLong( block.minTimestamp );
+                output.writeLong( block.maxTimestamp );
+                output.writeInt( block.pathIds.length );
+                for ( int pathId : block.pathIds )
+                {
+                    output.writeInt( pathId );
+                }
+            }
+        }
+    }
+
+    private static void readDictionary( DataInputStream input, List<String> dictionary )
+        throws IOException
+    {
+        int size = input.readInt();
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( input.readBoolean() )
+            {
+                byte[] bytes = new byte[input.readUnsignedShort()];
+                input.readFully( bytes );
+                dictionary.add( new String( bytes, StandardCharsets.UTF_8 ) );
+            }
+            else
+            {
+                dictionary.add( null );
+            }
+        }
+    }
+
+    private static void writeDictionary( DataOutputStream output, List<String> dictionary )
+        throws IOException
+    {
+        output.writeInt( dictionary.size() );
+        for ( String value : dictionary )
+        {
+            output.writeBoolean( value != null );
+            if ( value != null )
+            {
+                // same layout as the binary values file, writeUTF is limited to 65535 modified utf-8 bytes
+                byte[] bytes = BinaryValuesCodec.encodeEntry( value );
+                output.writeShort( bytes.length );
+                output.write( bytes );
+            }
+        }
+    }
+
+    public static class Block
+    {
+        private final long offset;
+
+        private final int length;
+
+        private final int recordCount;
+
+        private final long minTimestamp;
+
+        private final long maxTimestamp;
+
+        /**
+         * sorted
+         */
+        private final int[] pathIds;
+
+        public Block( long offset, int length, int recordCount, long minTimestamp, long maxTimestamp, int[] pathIds )
+        {
+            this.offset = offset;
+            this.length = length;
+            this.recordCount = recordCount;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.pathIds = pathIds;
+        }
+
+        /**
+         * @param pathId <code>-1</code> for any path
+         * @param from inclusive, same unit as {@link Values#getEventTimestamp()}
+         * @param to inclusive
+         */
+        public boolean matches( int pathId, long from, long to )
+        {
+            return maxTimestamp >= from && minTimestamp <= to //
+                && ( pathId < 0 || Arrays.binarySearch( pathIds, pathId ) >= 0 );
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public int getLength()
+        {
+            return length;
+        }
+
+        public int getRecordCount()
+        {
+            return recordCount;
+        }
+
+        public long getMinTimestamp()
+        {
+            return minTimestamp;
+        }
+
+        public long getMaxTimestamp()
+        {
+            return maxTimestamp;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Block{" + "offset=" + offset + ", length=" + length + ", recordCount=" + recordCount
+                + ", minTimestamp=" + minTimestamp + ", maxTimestamp=" + maxTimestamp + ", pathIds="
+                + Arrays.toString( pathIds ) + '}';
+        }
+    }
+}
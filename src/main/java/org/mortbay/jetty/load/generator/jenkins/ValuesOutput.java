@@ -0,0 +1,49 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the {@link Values} consumed from the {@link ValuesFileWriter} ring buffer.
+ * Implementations are only ever called from the single consumer thread.
+ */
+public interface ValuesOutput
+    extends Closeable
+{
+
+    void write( Values values )
+        throws IOException;
+
+    /**
+     * Called after the last event of a disruptor batch has been written, outputs buffering a batch write it here.
+     */
+    default void endOfBatch()
+        throws IOException
+    {
+        // no op
+    }
+
+    /**
+     * Called once per flush interval of the {@link ValuesFileWriter}, including when no event is consumed.
+     */
+    void flush()
+        throws IOException;
+
+}
@@ -0,0 +1,245 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Written next to the values file by {@link ValuesFileWriter} at the end of a run,
+ * see {@link #summaryPath(Path)}.
+ */
+public class ValuesRunSummary
+{
+
+    private static final ObjectMapper OBJECT_MAPPER =
+        new ObjectMapper().configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+
+    private String format;
+
+    private String backpressurePolicy;
+
+    private long recordedCount;
+
+    /**
+     * events which found the ring buffer full with {@link ValuesFileWriter.BackpressurePolicy#BLOCK}, so the load
+     * generator thread has been slowed down by the recorder
+     */
+    private long blockedCount;
+
+    /**
+     * events not recorded because the ring buffer was full
+     */
+    private long droppedCount;
+
+    /**
+     * events not recorded because of {@link ValuesFileWriter.BackpressurePolicy#SAMPLE}
+     */
+    private long sampledOutCount;
+
+    /**
+     * events still in the ring buffer when the recorder stopped because draining it timed out
+     */
+    private long unconsumedCount;
+
+    private int ringBufferSize;
+
+    private long minRemainingCapacity;
+
+    /**
+     * micro seconds, see {@link ValuesHistograms}
+     */
+    private ValuesStatistics responseTime;
+
+    private ValuesStatistics latencyTime;
+
+    private Map<String, ValuesStatistics> responseTimePerPath;
+
+    private Map<String, ValuesStatistics> latencyTimePerPath;
+
+    public static Path summaryPath( Path valuesPath )
+    {
+        return valuesPath.resolveSibling( valuesPath.getFileName() + ".summary.json" );
+    }
+
+    public static ValuesRunSummary read( Path path )
+        throws IOException
+    {
+        return OBJECT_MAPPER.readValue( path.toFile(), ValuesRunSummary.class );
+    }
+
+    public void write( Path path )
+        throws IOException
+    {
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue( path.toFile(), this );
+    }
+
+    /**
+     * @return <code>false</code> if the recorder slowed down the load or lost events, the measured
+     * throughput and response times of the run should then not be trusted
+     */
+    public boolean isMeasurementValid()
+    {
+        return blockedCount == 0 && droppedCount == 0 && unconsumedCount == 0;
+    }
+
+    public String getFormat()
+    {
+        return format;
+    }
+
+    public void setFormat( String format )
+    {
+        this.format = format;
+    }
+
+    public String getBackpressurePolicy()
+    {
+        return backpressurePolicy;
+    }
+
+    public void setBackpressurePolicy( String backpressurePolicy )
+    {
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    public long getRecordedCount()
+    {
+        return recordedCount;
+    }
+
+    public void setRecordedCount( long recordedCount )
+    {
+        this.recordedCount = recordedCount;
+    }
+
+    public long getBlockedCount()
+    {
+        return blockedCount;
+    }
+
+    public void setBlockedCount( long blockedCount )
+    {
+        this.blockedCount = blockedCount;
+    }
+
+    public long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    public void setDroppedCount( long droppedCount )
+    {
+        this.droppedCount = droppedCount;
+    }
+
+    public long getSampledOutCount()
+    {
+        return sampledOutCount;
+    }
+
+    public void setSampledOutCount( long sampledOutCount )
+    {
+        this.sampledOutCount = sampledOutCount;
+    }
+
+    public long getUnconsumedCount()
+    {
+        return unconsumedCount;
+    }
+
+    public void setUnconsumedCount( long unconsumedCount )
+    {
+        this.unconsumedCount = unconsumedCount;
+    }
+
+    public int getRingBufferSize()
+    {
+        return ringBufferSize;
+    }
+
+    public void setRingBufferSize( int ringBufferSize )
+    {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public long getMinRemainingCapacity()
+    {
+        return minRemainingCapacity;
+    }
+
+    public void setMinRemainingCapacity( long minRemainingCapacity )
+    {
+        this.minRemainingCapacity = minRemainingCapacity;
+    }
+
+    public ValuesStatistics getResponseTime()
+    {
+        return responseTime;
+    }
+
+    public void setResponseTime( ValuesStatistics responseTime )
+    {
+        this.responseTime = responseTime;
+    }
+
+    public ValuesStatistics getLatencyTime()
+    {
+        return latencyTime;
+    }
+
+    public void setLatencyTime( ValuesStatistics latencyTime )
+    {
+        this.latencyTime = latencyTime;
+    }
+
+    public Map<String, ValuesStatistics> getResponseTimePerPath()
+    {
+        return responseTimePerPath;
+    }
+
+    public void setResponseTimePerPath( Map<String, ValuesStatistics> responseTimePerPath )
+    {
+        this.responseTimePerPath = responseTimePerPath;
+    }
+
+    public Map<String, ValuesStatistics> getLatencyTimePerPath()
+    {
+        return latencyTimePerPath;
+    }
+
+    public void setLatencyTimePerPath( Map<String, ValuesStatistics> latencyTimePerPath )
+    {
+        this.latencyTimePerPath = latencyTimePerPath;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ValuesRunSummary{" + "format='" + format + '\'' + ", backpressurePolicy='" + backpressurePolicy + '\''
+            + ", recordedCount=" + recordedCount + ", blockedCount=" + blockedCount + ", droppedCount=" + droppedCount
+            + ", sampledOutCount=" + sampledOutCount + ", unconsumedCount=" + unconsumedCount + ", ringBufferSize="
+            + ringBufferSize
+            + ", minRemainingCapacity=" + minRemainingCapacity + ", responseTime=" + responseTime + ", latencyTime="
+            + latencyTime + '}';
+    }
+}
@@ -0,0 +1,148 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Summary of a histogram, values are in micro seconds.
+ */
+public class ValuesStatistics
+{
+
+    private long count;
+
+    private long minValue;
+
+    private long maxValue;
+
+    private double mean;
+
+    private long value50;
+
+    private long value90;
+
+    private long value99;
+
+    private long value999;
+
+    public static ValuesStatistics of( Histogram histogram )
+    {
+        ValuesStatistics statistics = new ValuesStatistics();
+        statistics.count = histogram.getTotalCount();
+        if ( statistics.count > 0 )
+        {
+            statistics.minValue = histogram.getMinValue();
+            statistics.maxValue = histogram.getMaxValue();
+            statistics.mean = histogram.getMean();
+            statistics.value50 = histogram.getValueAtPercentile( 50 );
+            statistics.value90 = histogram.getValueAtPercentile( 90 );
+            statistics.value99 = histogram.getValueAtPercentile( 99 );
+            statistics.value999 = histogram.getValueAtPercentile( 99.9 );
+        }
+        return statistics;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public void setCount( long count )
+    {
+        this.count = count;
+    }
+
+    public long getMinValue()
+    {
+        return minValue;
+    }
+
+    public void setMinValue( long minValue )
+    {
+        this.minValue = minValue;
+    }
+
+    public long getMaxValue()
+    {
+        return maxValue;
+    }
+
+    public void setMaxValue( long maxValue )
+    {
+        this.maxValue = maxValue;
+    }
+
+    public double getMean()
+    {
+        return mean;
+    }
+
+    public void setMean( double mean )
+    {
+        this.mean = mean;
+    }
+
+    public long getValue50()
+    {
+        return value50;
+    }
+
+    public void setValue50( long value50 )
+    {
+        this.value50 = value50;
+    }
+
+    public long getValue90()
+    {
+        return value90;
+    }
+
+    public void setValue90( long value90 )
+    {
+        this.value90 = value90;
+    }
+
+    public long getValue99()
+    {
+        return value99;
+    }
+
+    public void setValue99( long value99 )
+    {
+        this.value99 = value99;
+    }
+
+    public long getValue999()
+    {
+        return value999;
+    }
+
+    public void setValue999( long value999 )
+    {
+        this.value999 = value999;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ValuesStatistics{" + "count=" + count + ", minValue=" + minValue + ", maxValue=" + maxValue + ", mean="
+            + mean + ", value50=" + value50 + ", value90=" + value90 + ", value99=" + value99 + ", value999="
+            + value999 + '}';
+    }
+}
@@ -17,26 +17,25 @@
 
 package org.mortbay.jetty.load.generator.jenkins.cometd;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import hudson.model.Actionable;
 import hudson.model.ProminentProjectAction;
 import hudson.model.Run;
-import hudson.util.RunList;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.mortbay.jetty.load.generator.jenkins.JsonResponses;
 import org.mortbay.jetty.load.generator.jenkins.PluginConstants;
-import org.mortbay.jetty.load.generator.jenkins.cometd.beans.LoadResults;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.mortbay.jetty.load.generator.jenkins.TrendWindow;
 
 import javax.servlet.ServletException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  *
@@ -46,84 +45,90 @@ public class CometdProjectAction
     implements ProminentProjectAction
 {
 
-
-    private static final Logger LOGGER = LoggerFactory.getLogger( CometdProjectAction.class );
-
-    private final transient RunList<?> builds;
-
     private final transient Run<?, ?> lastRun;
 
-    public CometdProjectAction( RunList<?> builds, Run<?, ?> lastRun )
+    public CometdProjectAction( Run<?, ?> lastRun )
     {
-        this.builds = builds == null ? new RunList<>() : builds;
         this.lastRun = lastRun;
     }
 
+    /**
+     * Streams one flat entry per build with results, in ascending build number order, read from the
+     * {@link CometdTrendIndex} so builds are not loaded. The window is described by {@link TrendWindow}, the
+     * cursor being a build number. Only the rows of the page are held while the index is read.
+     */
     public void doTrend( StaplerRequest req, StaplerResponse rsp )
         throws IOException, ServletException
     {
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        List<BuildLoadResults> datas = new ArrayList<>();
-
-        for ( Run run : builds )
-        {
-            CometdResultBuildAction buildAction = run.getAction( CometdResultBuildAction.class );
-            if ( buildAction != null )
+        TrendWindow window = TrendWindow.of( req );
+        // the most recent builds of the window, one more than the limit to know if there are older ones
+        TreeMap<Integer, CSVRecord> newest = new TreeMap<>();
+        forEachRecord( record -> {
+            int buildNumber = CometdTrendIndex.buildNumber( record );
+            if ( window.acceptsBuild( buildNumber, NumberUtils.toLong( record.get( "timestamp" ) ) ) )
             {
-                if ( buildAction.getLoadResults() != null )
+                // a build published twice replaces its previous row
+                newest.put( buildNumber, record );
+                if ( newest.size() > window.getLimit() + 1 )
                 {
-                    BuildLoadResults buildLoadResults =
-                        new BuildLoadResults( run.getId(), buildAction.getLoadResults() );
-                    datas.add( buildLoadResults );
+                    newest.pollFirstEntry();
                 }
             }
+        } );
+        List<CSVRecord> records = new ArrayList<>( newest.values() );
+        List<CSVRecord> page = window.page( records );
+        if ( window.hasMore( records ) )
+        {
+            rsp.setHeader( TrendWindow.CURSOR_HEADER, page.get( 0 ).get( "buildId" ) );
+        }
+        try (JsonGenerator generator = JsonResponses.newGenerator( rsp ))
+        {
+            generator.writeStartArray();
+            for ( CSVRecord record : page )
+            {
+                CometdTrendIndex.write( record, generator );
+            }
+            generator.writeEndArray();
         }
-
-        // order by buildId
-
-        Collections.sort( datas, Comparator.comparing( BuildLoadResults::getBuildId ));
-
-        //StringWriter stringWriter = new StringWriter();
-
-        rsp.setHeader( "Content-Type", "application/json" );
-
-        objectMapper.writeValue( rsp.getOutputStream(), datas );
-
-        //rsp.getWriter().write( data );
-
     }
 
 
     public void doTitles( StaplerRequest req, StaplerResponse rsp )
         throws IOException, ServletException
     {
-        Map<String, String> titles = new HashMap<>();
-
-        if ( lastRun != null )
+        // units of the most recent build, the last row wins for a build published twice
+        AtomicReference<CSVRecord> last = new AtomicReference<>();
+        forEachRecord( record -> last.accumulateAndGet( record, ( previous, current ) -> //
+            previous == null || CometdTrendIndex.buildNumber( current ) >= CometdTrendIndex.buildNumber( previous ) //
+                ? current : previous ) );
+        try (JsonGenerator generator = JsonResponses.newGenerator( rsp ))
         {
-            CometdResultBuildAction buildAction = lastRun.getAction( CometdResultBuildAction.class );
-            if ( buildAction != null && buildAction.getLoadResults() != null )
+            generator.writeStartObject();
+            CSVRecord record = last.get();
+            if ( record != null )
             {
-                LoadResults loadResults = buildAction.getLoadResults();
-
-                titles.put( "latency", "Latency Trend " + loadResults.getResults().getLatency().getMax().getUnit() );
-                titles.put( "cpu", "Cpu Trend " + loadResults.getResults().getCpu().getUnit() + ", " //
-                    + " " + loadResults.getConfig().getCores() + " cores " );
-                titles.put( "garbage", "Garbage Trend " + loadResults.getResults().getGc().getOldGarbage().getUnit() );
+                generator.writeStringField( "latency", "Latency Trend " + record.get( "latencyUnit" ) );
+                generator.writeStringField( "cpu", "Cpu Trend " + record.get( "cpuUnit" ) //
+                    + ", " + " " + record.get( "cores" ) + " cores " );
+                generator.writeStringField( "garbage", "Garbage Trend " + record.get( "oldGarbageUnit" ) );
+            }
+            else
+            {
+                generator.writeStringField( "latency", "No Data" );
+                generator.writeStringField( "cpu", "No Data" );
+                generator.writeStringField( "garbage", "No Data" );
             }
+            generator.writeEndObject();
         }
-        else
+    }
+
+    private void forEachRecord( Consumer<CSVRecord> consumer )
+        throws IOException
+    {
+        if ( lastRun != null )
         {
-            titles.put( "latency", "No Data" );
-            titles.put( "cpu", "No Data" );
-            titles.put( "garbage", "No Data" );
+            new CometdTrendIndex( lastRun.getParent() ).forEach( consumer );
         }
-
-        rsp.addHeader( "Content-Type", "application/json; charset=utf-8" );
-
-        new ObjectMapper().writeValue( rsp.getOutputStream(), titles );
-
     }
 
     @Override
@@ -149,38 +154,4 @@ public class CometdProjectAction
     {
         return getUrlName();
     }
-
-    public static class BuildLoadResults
-        extends LoadResults
-    {
-        private String buildId;
-
-        private LoadResults loadResults;
-
-        public BuildLoadResults( String buildId, LoadResults loadResults )
-        {
-            this.buildId = buildId;
-            this.loadResults = loadResults;
-        }
-
-        public String getBuildId()
-        {
-            return buildId;
-        }
-
-        public void setBuildId( String buildId )
-        {
-            this.buildId = buildId;
-        }
-
-        public LoadResults getLoadResults()
-        {
-            return loadResults;
-        }
-
-        public void setLoadResults( LoadResults loadResults )
-        {
-            this.loadResults = loadResults;
-        }
-    }
 }
@@ -79,6 +79,16 @@ public class CometdPublisher
 
             run.addAction( new CometdResultBuildAction( healthReport, loadResults, run ) );
 
+            try
+            {
+                new CometdTrendIndex( run.getParent() ).append( run, loadResults );
+            }
+            catch ( IOException e )
+            {
+                // the index is rebuilt from the builds if missing, not a reason to fail the build
+                taskListener.getLogger().println( "Cannot update cometd trend index: " + e.getMessage() );
+            }
+
         }
     }
 
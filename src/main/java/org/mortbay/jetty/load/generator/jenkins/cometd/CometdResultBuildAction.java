@@ -71,7 +71,7 @@ public class CometdResultBuildAction
     public Collection<? extends Action> getProjectActions()
     {
         return this.builds != null ? //
-            Arrays.asList( new CometdProjectAction( this.builds, this.builds.getLastBuild() ) ) : Collections.emptyList();
+            Arrays.asList( new CometdProjectAction( this.builds.getLastBuild() ) ) : Collections.emptyList();
     }
 
     @Override
@@ -0,0 +1,248 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins.cometd;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import hudson.model.Job;
+import hudson.model.Run;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.mortbay.jetty.load.generator.jenkins.cometd.beans.Config;
+import org.mortbay.jetty.load.generator.jenkins.cometd.beans.Cpu;
+import org.mortbay.jetty.load.generator.jenkins.cometd.beans.Gc;
+import org.mortbay.jetty.load.generator.jenkins.cometd.beans.Latency;
+import org.mortbay.jetty.load.generator.jenkins.cometd.beans.LoadResults;
+import org.mortbay.jetty.load.generator.jenkins.cometd.beans.Results;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Append only csv file in the job directory with the numeric cometd metrics of each build, so trends are read
+ * without loading every build and its {@link LoadResults}. A row is appended when {@link CometdPublisher} attaches
+ * a result, the file is built once from the builds if it does not exist (i.e. jobs created before it).
+ * A build published twice has two rows, the last one wins.
+ */
+public class CometdTrendIndex
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( CometdTrendIndex.class );
+
+    public static final String FILE_NAME = "cometd-trend.csv";
+
+    private static final String BUILD_ID = "buildId";
+
+    private static final String[] HEADER =
+        { BUILD_ID, "timestamp", "latencyMin", "latencyP50", "latencyP99", "latencyMax", "latencyUnit", "cpu", //
+            "cpuUnit", "cores", "youngCount", "youngGarbage", "youngGarbageUnit", "youngTime", "youngTimeUnit", //
+            "oldCount", "oldGarbage", "oldGarbageUnit", "oldTime", "oldTimeUnit" };
+
+    /**
+     * one lock per job as builds of the same job can publish concurrently, dropped with the job
+     */
+    private static final Map<Job<?, ?>, Object> LOCKS = Collections.synchronizedMap( new WeakHashMap<>() );
+
+    private final Job<?, ?> job;
+
+    private final File file;
+
+    public CometdTrendIndex( Job<?, ?> job )
+    {
+        this.job = job;
+        this.file = new File( job.getRootDir(), FILE_NAME );
+    }
+
+    private Object lock()
+    {
+        return LOCKS.computeIfAbsent( job, j -> new Object() );
+    }
+
+    public void append( Run<?, ?> run, LoadResults loadResults )
+        throws IOException
+    {
+        synchronized ( lock() )
+        {
+            if ( !file.exists() )
+            {
+                // the new row is added by the rebuild if the action is already attached
+                rebuild();
+                if ( run.getAction( CometdResultBuildAction.class ) != null )
+                {
+                    return;
+                }
+            }
+            try (Writer writer = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8, //
+                                                          StandardOpenOption.CREATE, StandardOpenOption.APPEND );
+                 CSVPrinter printer = new CSVPrinter( writer, CSVFormat.DEFAULT ))
+            {
+                printer.printRecord( row( run, loadResults ) );
+            }
+        }
+    }
+
+    /**
+     * Visits every build once, only needed for jobs with results published before the index existed.
+     */
+    private void rebuild()
+        throws IOException
+    {
+        LOGGER.info( "building cometd trend index of {}", job.getFullName() );
+        File tmp = new File( file.getParentFile(), FILE_NAME + ".tmp" );
+        try (Writer writer = Files.newBufferedWriter( tmp.toPath(), StandardCharsets.UTF_8 );
+             CSVPrinter printer = new CSVPrinter( writer, CSVFormat.DEFAULT.withHeader( HEADER ) ))
+        {
+            // oldest first so the file stays in build order
+            for ( Run<?, ?> run = job.getBuilds().getLastBuild(); run != null; run = run.getNextBuild() )
+            {
+                CometdResultBuildAction buildAction = run.getAction( CometdResultBuildAction.class );
+                if ( buildAction != null && buildAction.getLoadResults() != null )
+                {
+                    printer.printRecord( row( run, buildAction.getLoadResults() ) );
+                }
+            }
+        }
+        Files.move( tmp.toPath(), file.toPath() );
+    }
+
+    /**
+     * Streams the rows of the builds still existing in file order, i.e. mostly ascending build number order.
+     * A build published twice is given twice, the last row wins. The consumer is called under the index lock so
+     * must not block.
+     */
+    public void forEach( Consumer<CSVRecord> consumer )
+        throws IOException
+    {
+        // parsed under the lock so a row being appended is never read half written
+        synchronized ( lock() )
+        {
+            if ( !file.exists() )
+            {
+                rebuild();
+            }
+            try (Reader reader = Files.newBufferedReader( file.toPath(), StandardCharsets.UTF_8 );
+                 CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse( reader ))
+            {
+                for ( CSVRecord record : parser )
+                {
+                    // a row cut short by a crash while appending
+                    if ( !record.isConsistent() )
+                    {
+                        LOGGER.debug( "skip inconsistent row {} of {}", record.getRecordNumber(), file );
+                        continue;
+                    }
+                    // deleted builds only cost a stat, not a build load
+                    if ( buildNumber( record ) >= 0
+                        && new File( job.getBuildDir(), record.get( BUILD_ID ) ).isDirectory() )
+                    {
+                        consumer.accept( record );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the build number of the row, <code>-1</code> if not a number
+     */
+    public static int buildNumber( CSVRecord record )
+    {
+        return NumberUtils.toInt( record.get( BUILD_ID ), -1 );
+    }
+
+    /**
+     * Writes the record as a flat object, numbers as numbers and missing values omitted.
+     */
+    public static void write( CSVRecord record, JsonGenerator generator )
+        throws IOException
+    {
+        generator.writeStartObject();
+        for ( Map.Entry<String, String> entry : record.toMap().entrySet() )
+        {
+            String value = entry.getValue();
+            if ( StringUtils.isEmpty( value ) )
+            {
+                continue;
+            }
+            if ( !entry.getKey().endsWith( "Unit" ) && NumberUtils.isCreatable( value ) )
+            {
+                generator.writeFieldName( entry.getKey() );
+                generator.writeNumber( value );
+            }
+            else
+            {
+                generator.writeStringField( entry.getKey(), value );
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static List<Object> row( Run<?, ?> run, LoadResults loadResults )
+    {
+        Optional<Results> results = Optional.ofNullable( loadResults.getResults() );
+        Optional<Latency> latency = results.map( Results::getLatency );
+        Optional<Cpu> cpu = results.map( Results::getCpu );
+        Optional<Gc> gc = results.map( Results::getGc );
+
+        List<Object> row = new ArrayList<>( HEADER.length );
+        row.add( run.getNumber() );
+        row.add( run.getTimeInMillis() );
+        row.add( value( latency, l -> l.getMin() == null ? null : l.getMin().getValue() ) );
+        row.add( value( latency, l -> l.getP50() == null ? null : l.getP50().getValue() ) );
+        row.add( value( latency, l -> l.getP99() == null ? null : l.getP99().getValue() ) );
+        row.add( value( latency, l -> l.getMax() == null ? null : l.getMax().getValue() ) );
+        row.add( value( latency, l -> l.getMax() == null ? null : l.getMax().getUnit() ) );
+        row.add( value( cpu, Cpu::getValue ) );
+        row.add( value( cpu, Cpu::getUnit ) );
+        row.add( value( Optional.ofNullable( loadResults.getConfig() ), Config::getCores ) );
+        row.add( value( gc, Gc::getYoungCount ) );
+        row.add( value( gc, g -> g.getYoungGarbage() == null ? null : g.getYoungGarbage().getValue() ) );
+        row.add( value( gc, g -> g.getYoungGarbage() == null ? null : g.getYoungGarbage().getUnit() ) );
+        row.add( value( gc, g -> g.getYoungTime() == null ? null : g.getYoungTime().getValue() ) );
+        row.add( value( gc, g -> g.getYoungTime() == null ? null : g.getYoungTime().getUnit() ) );
+        row.add( value( gc, Gc::getOldCount ) );
+        row.add( value( gc, g -> g.getOldGarbage() == null ? null : g.getOldGarbage().getValue() ) );
+        row.add( value( gc, g -> g.getOldGarbage() == null ? null : g.getOldGarbage().getUnit() ) );
+        row.add( value( gc, g -> g.getOldTime() == null ? null : g.getOldTime().getValue() ) );
+        row.add( value( gc, g -> g.getOldTime() == null ? null : g.getOldTime().getUnit() ) );
+        return row;
+    }
+
+    private static <T> Object value( Optional<T> bean, Function<T, Object> getter )
+    {
+        return bean.map( getter ).orElse( null );
+    }
+}
@@ -130,7 +130,17 @@ public class ElasticHost
         return null;
     }
 
-    // FIXME definitely something better to do as we build httpclient everytime.....
+    /**
+     * @return the shared store for this host, it must not be closed by the caller
+     */
+    public ElasticResultStore getElasticResultStore()
+    {
+        return ElasticResultStores.get( this );
+    }
+
+    /**
+     * Builds a new store with its own http client, prefer {@link #getElasticResultStore()}
+     */
     public ElasticResultStore buildElasticResultStore()
     {
         ElasticResultStore elasticResultStore = new ElasticResultStore();
@@ -72,6 +72,9 @@ public class ElasticHostProjectProperty
         {
             elasticHosts.replaceBy( req.bindJSONToList( ElasticHost.class, formData.get( "elasticHosts" ) ) );
             save();
+            // stores built with the previous hosts configuration
+            ElasticResultStores.invalidateAll();
+            JettyVersionsCache.INSTANCE.clear();
             return true;
         }
     }
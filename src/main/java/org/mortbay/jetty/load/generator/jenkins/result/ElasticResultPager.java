@@ -0,0 +1,168 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.mortbay.jetty.load.generator.jenkins.JsonResponses;
+import org.mortbay.jetty.load.generator.jenkins.RunInformations;
+import org.mortbay.jetty.load.generator.jenkins.TrendWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Pages through all the stored results of a jetty version, oldest first, using <code>search_after</code> on the
+ * result timestamp so exports are not capped by the size of one search response and only one page is held in
+ * memory.
+ */
+public class ElasticResultPager
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( ElasticResultPager.class );
+
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    private static final String KEYWORD_VERSION_QUERY = "{ \"size\": 0, \"terminate_after\": 1, " //
+        + "\"query\": { \"exists\": { \"field\": \"serverInfo.jettyVersion.keyword\" } } }";
+
+    /**
+     * result of the keyword field probe per {@link ElasticResultStores#key(ElasticHost) host}
+     */
+    private static final Map<String, Boolean> KEYWORD_VERSIONS = new ConcurrentHashMap<>();
+
+    private final ElasticHost elasticHost;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    private TrendWindow window = TrendWindow.latest( TrendWindow.MAX_LIMIT );
+
+    public ElasticResultPager( ElasticHost elasticHost )
+    {
+        this.elasticHost = elasticHost;
+    }
+
+    public ElasticResultPager pageSize( int pageSize )
+    {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * only the time window and cursor are used, the limit is ignored
+     */
+    public ElasticResultPager window( TrendWindow window )
+    {
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * @return the number of results given to the consumer
+     */
+    public long forEach( String jettyVersion, Consumer<RunInformations> consumer )
+        throws IOException
+    {
+        if ( !hasKeywordVersion( elasticHost ) )
+        {
+            // older indices without keyword field
+            String wildcard = StringEscapeUtils.escapeJson( LoadResultProjectAction.wildcardVersion( jettyVersion ) );
+            return forEach( jettyVersion, //
+                            "{ \"wildcard\" : { \"serverInfo.jettyVersion\" : \"" + wildcard + "\" } }", //
+                            consumer );
+        }
+        String escaped = StringEscapeUtils.escapeJson( jettyVersion );
+        return forEach( jettyVersion, //
+                        "{ \"term\" : { \"serverInfo.jettyVersion.keyword\" : \"" + escaped + "\" } }", //
+                        consumer );
+    }
+
+    /**
+     * @return <code>true</code> if any stored result has the <code>serverInfo.jettyVersion.keyword</code> field,
+     * checked once per host until the configuration changes and stopping at the first matching document
+     */
+    static boolean hasKeywordVersion( ElasticHost elasticHost )
+        throws IOException
+    {
+        String key = ElasticResultStores.key( elasticHost );
+        Boolean keywordVersion = KEYWORD_VERSIONS.get( key );
+        if ( keywordVersion == null )
+        {
+            String results = elasticHost.getElasticResultStore().search( KEYWORD_VERSION_QUERY );
+            JsonNode total = JsonResponses.OBJECT_MAPPER.readTree( results ).path( "hits" ).path( "total" );
+            // a number before Elasticsearch 7, an object with the value since
+            keywordVersion = ( total.isObject() ? total.path( "value" ) : total ).asLong() > 0;
+            KEYWORD_VERSIONS.put( key, keywordVersion );
+        }
+        return keywordVersion;
+    }
+
+    static void invalidateKeywordVersions()
+    {
+        KEYWORD_VERSIONS.clear();
+    }
+
+    private long forEach( String jettyVersion, String versionQuery, Consumer<RunInformations> consumer )
+        throws IOException
+    {
+        String template;
+        try (InputStream inputStream = ElasticResultPager.class.getResourceAsStream( "/versionResultPage.json" ))
+        {
+            template = IOUtils.toString( inputStream );
+        }
+        Map<String, String> map = new HashMap<>( 4 );
+        map.put( "pageSize", Integer.toString( pageSize ) );
+        map.put( "versionQuery", versionQuery );
+        map.put( "filters", window.elasticFilter( "collectorInformations.startTimeStamp" ) );
+        map.put( "searchAfter", "" );
+
+        long count = 0;
+        while ( true )
+        {
+            String results = elasticHost.getElasticResultStore().search( StrSubstitutor.replace( template, map ) );
+            JsonNode hits = JsonResponses.OBJECT_MAPPER.readTree( results ).path( "hits" ).path( "hits" );
+            for ( JsonNode hit : hits )
+            {
+                RunInformations runInformations = new RunInformations( hit.get( "_source" ) );
+                // the filter includes the cursor timestamp when the cursor has an uuid
+                if ( StringUtils.equalsIgnoreCase( jettyVersion, runInformations.getJettyVersion() ) //
+                    && window.acceptsTime( runInformations.getStartTimeStamp(), runInformations.getUuid() ) )
+                {
+                    consumer.accept( runInformations );
+                    count++;
+                }
+            }
+            LOGGER.debug( "page of {} results for version {}", hits.size(), jettyVersion );
+            if ( hits.size() < pageSize )
+            {
+                return count;
+            }
+            // sort values of the last hit are the start of the next page
+            map.put( "searchAfter", ", \"search_after\": " + hits.get( hits.size() - 1 ).get( "sort" ) );
+        }
+    }
+}
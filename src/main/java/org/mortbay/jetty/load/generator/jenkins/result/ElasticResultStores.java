@@ -0,0 +1,113 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import hudson.init.Terminator;
+import jenkins.util.Timer;
+import org.mortbay.jetty.load.generator.store.ElasticResultStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps one long lived {@link ElasticResultStore} per configured {@link ElasticHost} so the underlying http client
+ * and its pooled keep-alive connections are reused across page views and builds.
+ * Stores returned here are shared: callers must not close them.
+ */
+public class ElasticResultStores
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( ElasticResultStores.class );
+
+    /**
+     * seconds an invalidated store stays open for the requests which already got it
+     */
+    public static final long CLOSE_GRACE_PERIOD = Long.getLong( "loadgenerator.elastic.closeGracePeriod", //
+                                                                2 * LoadResultProjectAction.SEARCH_TIMEOUT );
+
+    private static final Map<String, ElasticResultStore> STORES = new ConcurrentHashMap<>();
+
+    private ElasticResultStores()
+    {
+        // no op
+    }
+
+    public static ElasticResultStore get( ElasticHost elasticHost )
+    {
+        return STORES.computeIfAbsent( key( elasticHost ), key -> {
+            LOGGER.debug( "build elastic result store for {}", elasticHost.getElasticHostName() );
+            return elasticHost.buildElasticResultStore();
+        } );
+    }
+
+    /**
+     * Forgets all the stores, the next call to {@link #get(ElasticHost)} will build a new one with the current
+     * configuration and probe its indices again. The forgotten stores are closed after {@link #CLOSE_GRACE_PERIOD}
+     * seconds as in flight searches may still use them.
+     */
+    public static void invalidateAll()
+    {
+        ElasticResultPager.invalidateKeywordVersions();
+        removeAll( store -> Timer.get().schedule( () -> close( store ), CLOSE_GRACE_PERIOD, TimeUnit.SECONDS ) );
+    }
+
+    @Terminator
+    public static void shutdown()
+    {
+        LOGGER.debug( "close elastic result stores" );
+        removeAll( ElasticResultStores::close );
+    }
+
+    private static void removeAll( Consumer<ElasticResultStore> removed )
+    {
+        STORES.keySet().forEach( key -> {
+            ElasticResultStore store = STORES.remove( key );
+            if ( store != null )
+            {
+                removed.accept( store );
+            }
+        } );
+    }
+
+    private static void close( ElasticResultStore store )
+    {
+        try
+        {
+            store.close();
+        }
+        catch ( Exception e )
+        {
+            LOGGER.warn( "Fail to close elastic result store: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Identity of the configured host, without the password so it never ends up in a map key or a log. A
+     * password change goes through {@link #invalidateAll()} with the rest of the configuration.
+     */
+    static String key( ElasticHost elasticHost )
+    {
+        return elasticHost.getElasticHostName() + '|' + elasticHost.getElasticScheme() + "://"
+            + elasticHost.getElasticUsername() + '@' + elasticHost.getElasticHost() + ':'
+            + elasticHost.getElasticPort();
+    }
+}
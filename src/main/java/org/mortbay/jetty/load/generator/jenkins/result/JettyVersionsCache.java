@@ -0,0 +1,195 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Last known jetty versions of each {@link ElasticHost}, as returned by
+ * {@link LoadResultProjectAction#getJettyVersions(ElasticHost)}.
+ * Pages render from the cached value while a stale one is refreshed in the background, only the very first load
+ * waits for Elasticsearch and at most {@link #getFirstLoadWait()} ms. A failed first load caches no versions so
+ * pages do not wait again before the next refresh.
+ */
+public class JettyVersionsCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( JettyVersionsCache.class );
+
+    public static final JettyVersionsCache INSTANCE = new JettyVersionsCache( //
+        TimeUnit.MINUTES.toMillis( Long.getLong( "loadgenerator.jettyVersions.refreshInterval", 10 ) ), //
+        Long.getLong( "loadgenerator.jettyVersions.firstLoadWait", 5000 ) );
+
+    /**
+     * refreshes are deduplicated per host so a couple of threads are enough, and slow Elasticsearch hosts do not
+     * hold the threads of the shared Jenkins timer
+     */
+    private static final ExecutorService REFRESH_EXECUTOR = refreshExecutor();
+
+    private final long refreshInterval;
+
+    private final long firstLoadWait;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public JettyVersionsCache( long refreshInterval, long firstLoadWait )
+    {
+        this.refreshInterval = refreshInterval;
+        this.firstLoadWait = firstLoadWait;
+    }
+
+    public Map<String, String> get( ElasticHost elasticHost )
+    {
+        Entry entry = entry( elasticHost );
+        Map<String, String> versions = entry.versions;
+        if ( versions == null )
+        {
+            long now = System.currentTimeMillis();
+            if ( now - entry.refreshed <= refreshInterval )
+            {
+                // the first load did not complete within the wait, the next pages do not wait again
+                return Collections.emptyMap();
+            }
+            entry.refreshed = now;
+            try
+            {
+                return refresh( elasticHost, entry ).get( firstLoadWait, TimeUnit.MILLISECONDS );
+            }
+            catch ( TimeoutException e )
+            {
+                LOGGER.debug( "jetty versions not loaded after {} ms", firstLoadWait );
+            }
+            catch ( ExecutionException e )
+            {
+                LOGGER.debug( "jetty versions not loaded: {}", e.getCause().getMessage() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.emptyMap();
+        }
+        if ( System.currentTimeMillis() - entry.refreshed > refreshInterval )
+        {
+            refresh( elasticHost, entry );
+        }
+        return versions;
+    }
+
+    /**
+     * Refreshes asynchronously, typically when a new result has been published.
+     */
+    public void refresh( ElasticHost elasticHost )
+    {
+        refresh( elasticHost, entry( elasticHost ) );
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public long getRefreshInterval()
+    {
+        return refreshInterval;
+    }
+
+    public long getFirstLoadWait()
+    {
+        return firstLoadWait;
+    }
+
+    private Entry entry( ElasticHost elasticHost )
+    {
+        return entries.computeIfAbsent( ElasticResultStores.key( elasticHost ), key -> new Entry() );
+    }
+
+    private CompletableFuture<Map<String, String>> refresh( ElasticHost elasticHost, Entry entry )
+    {
+        synchronized ( entry )
+        {
+            if ( entry.refreshing != null )
+            {
+                return entry.refreshing;
+            }
+            CompletableFuture<Map<String, String>> refreshing = new CompletableFuture<>();
+            entry.refreshing = refreshing;
+            REFRESH_EXECUTOR.submit( () -> {
+                try
+                {
+                    Map<String, String> versions = LoadResultProjectAction.getJettyVersions( elasticHost );
+                    entry.versions = versions;
+                    refreshing.complete( versions );
+                }
+                catch ( Throwable e )
+                {
+                    LOGGER.warn( "Fail to refresh jetty versions: " + e.getMessage(), e );
+                    if ( entry.versions == null )
+                    {
+                        // rendered as no versions until the next refresh instead of waiting again
+                        entry.versions = Collections.emptyMap();
+                    }
+                    refreshing.completeExceptionally( e );
+                }
+                finally
+                {
+                    // a failure is retried after the refresh interval as well
+                    entry.refreshed = System.currentTimeMillis();
+                    synchronized ( entry )
+                    {
+                        entry.refreshing = null;
+                    }
+                }
+            } );
+            return refreshing;
+        }
+    }
+
+    private static ExecutorService refreshExecutor()
+    {
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( 2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), //
+                                    new NamingThreadFactory( new DaemonThreadFactory(),
+                                                             "loadgenerator-jetty-versions" ) );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    private static class Entry
+    {
+        private volatile Map<String, String> versions;
+
+        private volatile long refreshed;
+
+        private CompletableFuture<Map<String, String>> refreshing;
+    }
+}
@@ -0,0 +1,149 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import org.mortbay.jetty.load.generator.listeners.LoadResult;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller wide cache of the parsed {@link LoadResult} of builds, keyed by job full name and build id.
+ * Entries are evicted least recently used first once {@link #getMaxSize()} is reached, or when older than the ttl.
+ */
+public class LoadResultCache
+{
+    public static final LoadResultCache INSTANCE =
+        new LoadResultCache( Integer.getInteger( "loadgenerator.loadResultCache.size", 100 ), //
+                             TimeUnit.MINUTES.toMillis( Long.getLong( "loadgenerator.loadResultCache.ttl", 60 ) ) );
+
+    private final int maxSize;
+
+    private final long ttl;
+
+    private final Map<String, Entry> entries;
+
+    private long hits, misses, evictions;
+
+    public LoadResultCache( int maxSize, long ttl )
+    {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                if ( size() > LoadResultCache.this.maxSize )
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static String key( String jobFullName, String buildId )
+    {
+        return jobFullName + '#' + buildId;
+    }
+
+    /**
+     * @return null if not cached or expired
+     */
+    public synchronized List<LoadResult> get( String key )
+    {
+        Entry entry = entries.get( key );
+        if ( entry != null && System.currentTimeMillis() - entry.created > ttl )
+        {
+            entries.remove( key );
+            evictions++;
+            entry = null;
+        }
+        if ( entry == null )
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.loadResults;
+    }
+
+    public synchronized void put( String key, List<LoadResult> loadResults )
+    {
+        entries.put( key, new Entry( loadResults ) );
+    }
+
+    public synchronized void invalidate( String key )
+    {
+        entries.remove( key );
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public synchronized int getSize()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "LoadResultCache{" + "size=" + entries.size() + ", maxSize=" + maxSize + ", ttl=" + ttl + ", hits="
+            + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+
+    private static class Entry
+    {
+        private final List<LoadResult> loadResults;
+
+        private final long created = System.currentTimeMillis();
+
+        private Entry( List<LoadResult> loadResults )
+        {
+            this.loadResults = loadResults;
+        }
+    }
+}
@@ -17,26 +17,33 @@
 
 package org.mortbay.jetty.load.generator.jenkins.result;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.jayway.jsonpath.JsonPath;
 import hudson.model.Actionable;
 import hudson.model.ProminentProjectAction;
 import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import hudson.util.RunList;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.text.StrSubstitutor;
+import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
-import org.eclipse.jetty.client.HttpContentResponse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.mortbay.jetty.load.generator.jenkins.JsonResponses;
 import org.mortbay.jetty.load.generator.jenkins.PluginConstants;
 import org.mortbay.jetty.load.generator.jenkins.RunInformations;
-import org.mortbay.jetty.load.generator.listeners.LoadResult;
+import org.mortbay.jetty.load.generator.jenkins.RunInformationsBucket;
+import org.mortbay.jetty.load.generator.jenkins.TrendWindow;
 import org.mortbay.jetty.load.generator.store.ElasticResultStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.CharacterIterator;
@@ -48,6 +55,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -60,6 +76,32 @@ public class LoadResultProjectAction
 
     private static final Logger LOGGER = LoggerFactory.getLogger( LoadResultProjectAction.class );
 
+    /**
+     * overall timeout in seconds of the concurrent per version searches
+     */
+    public static final long SEARCH_TIMEOUT = Long.getLong( "loadgenerator.elastic.searchTimeout", 30 );
+
+    public static final String DEFAULT_BUCKET_INTERVAL = "1w";
+
+    // fixed hours or days, calendar units can only be used with a value of 1
+    private static final Pattern BUCKET_INTERVAL = Pattern.compile( "[1-9][0-9]*[hd]|1[wMqy]" );
+
+    private static final Pattern CALENDAR_INTERVAL = Pattern.compile( "1[wMqy]" );
+
+    /**
+     * order of the trends and of their {@link TrendWindow} cursor: start timestamp then uuid
+     */
+    private static final Comparator<RunInformations> TREND_ORDER =
+        Comparator.comparingLong( RunInformations::getStartTimeStamp ) //
+            .thenComparing( RunInformations::getUuid, Comparator.nullsFirst( Comparator.naturalOrder() ) );
+
+    /**
+     * maximum number of concurrent per version searches, shared by all the page views
+     */
+    public static final int SEARCH_THREADS = Integer.getInteger( "loadgenerator.elastic.searchThreads", 8 );
+
+    private static final ExecutorService SEARCH_EXECUTOR = searchExecutor();
+
     private final transient RunList<?> builds;
 
     private final String elasticHostName;
@@ -100,7 +142,8 @@ public class LoadResultProjectAction
 
 
     /**
-     * @return all jetty versions available in loadresult index key version value number of results
+     * @return all jetty versions available in loadresult index key version value number of results, last known
+     * value from the {@link JettyVersionsCache}
      */
     public Map<String, String> getJettyVersions()
         throws IOException
@@ -108,16 +151,23 @@ public class LoadResultProjectAction
         LOGGER.debug( "getJettyVersions" );
 
         ElasticHost elasticHost = ElasticHost.get( elasticHostName );
-        return getJettyVersions( elasticHost );
+        if ( elasticHost == null )
+        {
+            return LocalResultStore.get().getJettyVersions();
+        }
+        return JettyVersionsCache.INSTANCE.get( elasticHost );
     }
 
+    /**
+     * Runs the distinct version aggregation, prefer the cached {@link #getJettyVersions()}
+     */
     public static Map<String, String> getJettyVersions( ElasticHost elasticHost )
         throws IOException
     {
         LOGGER.debug( "getJettyVersions" );
 
-        try (ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore(); //
-             InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/distinctJettyVersion.json" ))
+        ElasticResultStore elasticResultStore = elasticHost.getElasticResultStore();
+        try (InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/distinctJettyVersion.json" ))
         {
             String distinctSearchQuery = IOUtils.toString( inputStream );
 
@@ -144,16 +194,94 @@ public class LoadResultProjectAction
         String jettyVersion = req.getParameter( "jettyVersion" );
         String[] versions = StringUtils.split(jettyVersion, '|');
         ElasticHost elasticHost = ElasticHost.get( elasticHostName );
+        TrendWindow window = TrendWindow.of( req );
+
+        try
+        {
+            List<RunInformations> runInformations = searchRunInformations( versions, elasticHost, window );
+            List<RunInformations> page = window.page( runInformations );
+            if ( window.hasMore( runInformations ) )
+            {
+                RunInformations oldest = page.get( 0 );
+                rsp.setHeader( TrendWindow.CURSOR_HEADER,
+                               TrendWindow.cursor( oldest.getStartTimeStamp(), oldest.getUuid() ) );
+            }
+            try (JsonGenerator generator = JsonResponses.newGenerator( rsp ))
+            {
+                generator.writeStartArray();
+                for ( RunInformations runInformation : page )
+                {
+                    generator.writeObject( runInformation );
+                }
+                generator.writeEndArray();
+            }
+        }
+        catch ( TimeoutException e )
+        {
+            LOGGER.warn( "search of versions {} not completed after {} seconds", jettyVersion, SEARCH_TIMEOUT );
+            rsp.sendError( HttpServletResponse.SC_GATEWAY_TIMEOUT );
+        }
+        catch ( Exception e )
+        {
+            LOGGER.error( e.getMessage(), e );
+        }
+    }
 
+    /**
+     * @return <code>true</code> if {@link #doResponseTimeTrendBuckets(StaplerRequest, StaplerResponse)} can
+     * aggregate, i.e. results are stored in Elasticsearch
+     */
+    public boolean isTrendBucketsAvailable()
+    {
+        return ElasticHost.get( elasticHostName ) != null;
+    }
+
+    /**
+     * Same trend as {@link #doResponseTimeTrend(StaplerRequest, StaplerResponse)} but aggregated by Elasticsearch
+     * per version, transport, estimated qps and <code>interval</code> (e.g. 1d, 1w, 1M) so only bucket summaries
+     * are transferred. The {@link TrendWindow} limit is a number of intervals, all the buckets of an interval are
+     * returned together and the cursor is the start of the oldest returned interval.
+     */
+    public void doResponseTimeTrendBuckets( StaplerRequest req, StaplerResponse rsp )
+        throws IOException, ServletException
+    {
+        LOGGER.debug( "doResponseTimeTrendBuckets" );
+
+        String[] versions = StringUtils.split( req.getParameter( "jettyVersion" ), '|' );
+        String interval = req.getParameter( "interval" );
+        if ( interval == null || !BUCKET_INTERVAL.matcher( interval ).matches() )
+        {
+            interval = DEFAULT_BUCKET_INTERVAL;
+        }
+        ElasticHost elasticHost = ElasticHost.get( elasticHostName );
+        TrendWindow window = TrendWindow.of( req );
         try
         {
-            List<RunInformations> runInformations = new ArrayList<>();
-            for (String version:versions){
-                runInformations.addAll(searchRunInformations( version, elasticHost ));
+            List<RunInformationsBucket> buckets =
+                searchRunInformationsBuckets( versions, elasticHost, window, interval );
+            // buckets are sorted by time
+            List<Long> timeStamps = buckets.stream() //
+                .map( RunInformationsBucket::getTimeStamp ) //
+                .distinct() //
+                .collect( Collectors.toList() );
+            List<Long> page = window.page( timeStamps );
+            if ( window.hasMore( timeStamps ) )
+            {
+                rsp.setHeader( TrendWindow.CURSOR_HEADER, Long.toString( page.get( 0 ) ) );
+            }
+            long oldest = page.isEmpty() ? Long.MAX_VALUE : page.get( 0 );
+            try (JsonGenerator generator = JsonResponses.newGenerator( rsp ))
+            {
+                generator.writeStartArray();
+                for ( RunInformationsBucket bucket : buckets )
+                {
+                    if ( bucket.getTimeStamp() >= oldest )
+                    {
+                        generator.writeObject( bucket );
+                    }
+                }
+                generator.writeEndArray();
             }
-            Collections.sort( runInformations, Comparator.comparing( o -> o.getStartTimeStamp() ) );
-            rsp.addHeader( "Content-Type", "application/json" );
-            LoadTestResultPublisher.OBJECT_MAPPER.writeValue( rsp.getWriter(), runInformations );
         }
         catch ( Exception e )
         {
@@ -161,6 +289,130 @@ public class LoadResultProjectAction
         }
     }
 
+    /**
+     * One aggregation query for all the versions, needs the <code>serverInfo.jettyVersion.keyword</code> field.
+     * The estimated qps is computed by the aggregation from the loader config of each document, the documents
+     * written by the load generator are never rewritten to add it.
+     *
+     * @return the buckets sorted by time
+     */
+    public static List<RunInformationsBucket> searchRunInformationsBuckets( String[] versions, ElasticHost elasticHost,
+                                                                            TrendWindow window, String interval )
+        throws IOException
+    {
+        if ( elasticHost == null )
+        {
+            // aggregations are only available with Elasticsearch
+            return Collections.emptyList();
+        }
+        StringBuilder jettyVersions = new StringBuilder( "[" );
+        for ( String version : versions )
+        {
+            jettyVersions.append( jettyVersions.length() > 1 ? ", \"" : "\"" ) //
+                .append( StringEscapeUtils.escapeJson( version ) ).append( '"' );
+        }
+        Map<String, String> map = new HashMap<>( 4 );
+        map.put( "jettyVersions", jettyVersions.append( ']' ).toString() );
+        map.put( "interval", interval );
+        map.put( "intervalType", CALENDAR_INTERVAL.matcher( interval ).matches() //
+            ? "calendar_interval" : "fixed_interval" );
+        map.put( "filters", window.elasticFilter( "collectorInformations.startTimeStamp" ) );
+
+        String query;
+        try (InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream(
+            "/versionTrendAggregation.json" ))
+        {
+            query = StrSubstitutor.replace( IOUtils.toString( inputStream ), map );
+        }
+        JsonNode aggregations =
+            JsonResponses.OBJECT_MAPPER.readTree( elasticHost.getElasticResultStore().search( query ) ) //
+                .path( "aggregations" );
+
+        List<RunInformationsBucket> buckets = new ArrayList<>();
+        for ( JsonNode version : aggregations.path( "version" ).path( "buckets" ) )
+        {
+            for ( JsonNode transport : version.path( "transport" ).path( "buckets" ) )
+            {
+                for ( JsonNode estimatedQps : transport.path( "estimatedQps" ).path( "buckets" ) )
+                {
+                    for ( JsonNode time : estimatedQps.path( "time" ).path( "buckets" ) )
+                    {
+                        JsonNode mean = time.path( "mean" );
+                        double value50 = time.path( "value50" ).path( "values" ).path( "50.0" ).asDouble();
+                        double value90 = time.path( "value90" ).path( "values" ).path( "50.0" ).asDouble();
+                        String transportName = StringUtils.lowerCase( transport.path( "key" ).asText() );
+                        buckets.add( new RunInformationsBucket( version.path( "key" ).asText(), //
+                                                                transportName, //
+                                                                estimatedQps.path( "key" ).asInt(), //
+                                                                time.path( "key" ).asLong(), //
+                                                                time.path( "doc_count" ).asLong(), //
+                                                                mean.path( "min" ).asDouble(), //
+                                                                mean.path( "avg" ).asDouble(), //
+                                                                mean.path( "max" ).asDouble(), //
+                                                                value50, value90 ) );
+                    }
+                }
+            }
+        }
+        buckets.sort( Comparator.comparingLong( RunInformationsBucket::getTimeStamp ) );
+        return buckets;
+    }
+
+    /**
+     * Searches all the versions concurrently, each version being one Elasticsearch query run by at most
+     * {@link #SEARCH_THREADS} threads.
+     *
+     * @return the merged results sorted by start timestamp
+     * @throws TimeoutException if all the searches are not completed within {@link #SEARCH_TIMEOUT} seconds, the
+     * searches still running are interrupted
+     */
+    public static List<RunInformations> searchRunInformations( String[] versions, ElasticHost elasticHost,
+                                                               TrendWindow window )
+        throws IOException, InterruptedException, TimeoutException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( SEARCH_TIMEOUT );
+        List<Future<List<RunInformations>>> searches = new ArrayList<>( versions.length );
+        List<RunInformations> runInformations = new ArrayList<>();
+        try
+        {
+            for ( String version : versions )
+            {
+                searches.add( SEARCH_EXECUTOR.submit( () -> searchRunInformations( version, elasticHost, window ) ) );
+            }
+            for ( Future<List<RunInformations>> search : searches )
+            {
+                runInformations.addAll( search.get( deadline - System.nanoTime(), TimeUnit.NANOSECONDS ) );
+            }
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IOException( e.getCause().getMessage(), e.getCause() );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            throw new IOException( "too many pending searches", e );
+        }
+        finally
+        {
+            // no op for the completed ones, interrupts the searches still running
+            searches.forEach( search -> search.cancel( true ) );
+        }
+        Collections.sort( runInformations, TREND_ORDER );
+        return runInformations;
+    }
+
+    private static ExecutorService searchExecutor()
+    {
+        // a bounded queue as well so a burst of page views fails fast instead of piling up searches
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( SEARCH_THREADS, SEARCH_THREADS, 60, TimeUnit.SECONDS, //
+                                    new LinkedBlockingQueue<>( SEARCH_THREADS * 16 ), //
+                                    new NamingThreadFactory( new DaemonThreadFactory(),
+                                                             "loadgenerator-elastic-search" ) );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
     public static List<RunInformations> searchRunInformations( String jettyVersion, ElasticHost elasticHost )
         throws IOException
     {
@@ -171,9 +423,97 @@ public class LoadResultProjectAction
                                                                int maxResult )
         throws IOException
     {
+        return searchRunInformations( jettyVersion, elasticHost, TrendWindow.latest( maxResult ), maxResult );
+    }
+
+    /**
+     * @return up to one more result than the window limit, so the caller knows if there are older results
+     */
+    public static List<RunInformations> searchRunInformations( String jettyVersion, ElasticHost elasticHost,
+                                                               TrendWindow window )
+        throws IOException
+    {
+        return searchRunInformations( jettyVersion, elasticHost, window, window.getLimit() + 1 );
+    }
+
+    private static List<RunInformations> searchRunInformations( String jettyVersion, ElasticHost elasticHost,
+                                                                TrendWindow window, int maxResult )
+        throws IOException
+    {
+        if ( elasticHost == null )
+        {
+            // no elastic host configured so use the results stored under the Jenkins home
+            LocalResultStore.Query query = new LocalResultStore.Query() //
+                .jettyVersion( jettyVersion ) //
+                .since( window.getSince() ) //
+                .until( window.getUntil() ) //
+                .before( window.getCursor(), window.getCursorKey() ) //
+                .limit( maxResult );
+            return LocalResultStore.get().findRunInformations( query );
+        }
+        Map<String, String> map = new HashMap<>( 4 );
+        map.put( "jettyVersion", StringEscapeUtils.escapeJson( jettyVersion ) );
+        map.put( "maxResult", Integer.toString( maxResult ) );
+        map.put( "filters", window.elasticFilter( "collectorInformations.startTimeStamp" ) );
+        map.put( "searchAfter", window.elasticSearchAfter() );
+
+        // exact match on the keyword field so only the wanted version is transferred
+        boolean exact = ElasticResultPager.hasKeywordVersion( elasticHost );
+        if ( !exact )
+        {
+            // older indices without keyword field, the wildcard also matches other versions filtered back here
+            map.put( "jettyVersion", wildcardVersion( jettyVersion ) );
+        }
+        String template = exact ? "/versionResultExact.json" : "/versionResult.json";
+
+        // the templates only return the fields needed so no need of mapping full LoadResult
+        List<RunInformations> runInformations = new ArrayList<>( maxResult );
+        JsonNode hits;
+        do
+        {
+            hits = search( elasticHost, template, map );
+            for ( JsonNode hit : hits )
+            {
+                RunInformations runInformation = new RunInformations( hit.get( "_source" ) );
+                if ( runInformations.size() < maxResult //
+                    && StringUtils.equalsIgnoreCase( jettyVersion, runInformation.getJettyVersion() ) )
+                {
+                    runInformations.add( runInformation );
+                }
+            }
+            if ( hits.size() > 0 )
+            {
+                // sort values of the last hit are the start of the next page
+                map.put( "searchAfter", ", \"search_after\": " + hits.get( hits.size() - 1 ).get( "sort" ) );
+            }
+        }
+        // with the wildcard a full page can hold fewer matches than wanted, so keep paging for the window cursor
+        while ( !exact && runInformations.size() < maxResult && hits.size() == maxResult );
 
-        String originalJettyVersion = jettyVersion;
+        Collections.sort( runInformations, TREND_ORDER );
+        return runInformations;
+    }
+
+    /**
+     * @return the <code>hits.hits</code> array of the search response
+     */
+    private static JsonNode search( ElasticHost elasticHost, String template, Map<String, String> map )
+        throws IOException
+    {
+        ElasticResultStore elasticResultStore = elasticHost.getElasticResultStore();
+        try (InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( template ))
+        {
+            String query = StrSubstitutor.replace( IOUtils.toString( inputStream ), map );
+            String results = elasticResultStore.search( query );
+            return JsonResponses.OBJECT_MAPPER.readTree( results ).path( "hits" ).path( "hits" );
+        }
+    }
 
+    /**
+     * @return the wildcard pattern used with the analyzed jettyVersion field, results must be filtered back
+     */
+    static String wildcardVersion( String jettyVersion )
+    {
         // jettyVersion 9.4.9*
         //in case jettyVersion is 9.4.9.v20180320 we need to replace with 9.4.9*
         if ( StringUtils.contains( jettyVersion, 'v' ) )
@@ -200,39 +540,7 @@ public class LoadResultProjectAction
             }
         }
 
-        jettyVersion = versionQuery.toString() + "*";
-
-        try (ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore(); //
-             InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/versionResult.json" ))
-        {
-            String versionResultQuery = IOUtils.toString( inputStream );
-            Map<String, String> map = new HashMap<>( 1 );
-            map.put( "jettyVersion", jettyVersion );
-            map.put( "maxResult", Integer.toString( maxResult ) );
-            versionResultQuery = StrSubstitutor.replace( versionResultQuery, map );
-
-            String results = elasticResultStore.search( versionResultQuery );
-
-            List<LoadResult> loadResults =
-                ElasticResultStore.map( new HttpContentResponse( null, results.getBytes(), null, null ) );
-
-            List<RunInformations> runInformations = //
-                loadResults.stream() //
-                    .filter( loadResult -> StringUtils.equalsIgnoreCase( originalJettyVersion, //
-                                                                         loadResult.getServerInfo().getJettyVersion() ) ) //
-                    .map( loadResult -> new RunInformations(
-                        loadResult.getServerInfo().getJettyVersion() + ":" + loadResult.getServerInfo().getGitHash(), //
-                        loadResult.getCollectorInformations(), StringUtils.lowerCase(loadResult.getTransport())) //
-                        .jettyVersion( loadResult.getServerInfo().getJettyVersion() ) //
-                        .estimatedQps( LoadTestResultBuildAction.estimatedQps(
-                            LoadTestResultBuildAction.getLoaderConfig( loadResult ) ) ) //
-                        .serverInfo( loadResult.getServerInfo() ) ) //
-                    .collect( Collectors.toList() );
-
-            Collections.sort( runInformations, Comparator.comparing( o -> o.getStartTimeStamp() ) );
-            return runInformations;
-        }
-
+        return versionQuery.toString() + "*";
     }
 
 
@@ -32,6 +32,7 @@ import org.mortbay.jetty.load.generator.store.ElasticResultStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -62,7 +63,11 @@ public class LoadTestResultBuildAction
     // we store json because of  https://jenkins.io/redirect/class-filter/
     private String loadResultsJson;
 
-    private transient List<LoadResult> loadResults;
+    // key of the shared LoadResultCache where the parsed results are kept, missing for builds of older versions
+    private String jobFullName;
+
+    // ids of the results in the store, missing for builds of older versions
+    private List<String> resultUuids;
 
     public LoadTestResultBuildAction( HealthReport healthReport, Run<?, ?> run, String elasticHostName,
                                       String loadResultsJson )
@@ -73,10 +78,21 @@ public class LoadTestResultBuildAction
         this.jobName = run.getParent().getName();
         this.elasticHostName = elasticHostName;
         this.loadResultsJson = loadResultsJson;
-        this.loadResults =
-            LoadTestResultPublisher.OBJECT_MAPPER.readValue( this.loadResultsJson, new TypeReference<List<LoadResult>>()
-            {
-            } );
+        this.jobFullName = run.getParent().getFullName();
+        List<LoadResult> loadResults = parse( loadResultsJson );
+        this.resultUuids = loadResults.stream() //
+            .map( LoadResult::getUuid ) //
+            .filter( uuid -> uuid != null ) //
+            .collect( Collectors.toList() );
+        LoadResultCache.INSTANCE.put( LoadResultCache.key( jobFullName, buildId ), loadResults );
+    }
+
+    private static List<LoadResult> parse( String loadResultsJson )
+        throws IOException
+    {
+        return LoadTestResultPublisher.OBJECT_MAPPER.readValue( loadResultsJson, new TypeReference<List<LoadResult>>()
+        {
+        } );
     }
 
     public String getBuildId()
@@ -112,29 +128,55 @@ public class LoadTestResultBuildAction
         if ( parent != null )
         {
             this.builds = parent.getBuilds();
+            // also follows a rename or move of the job
+            this.jobFullName = parent.getFullName();
         }
-        if ( this.loadResults == null )
-        {
-            getLoadResults();
-        }
+        // results are loaded lazily when the build page is displayed
     }
 
+    /**
+     * Looks in the {@link LoadResultCache}, then in the json stored with the build and only then in Elasticsearch.
+     */
     public List<LoadResult> getLoadResults()
     {
-        if ( loadResults == null )
+        String key = LoadResultCache.key( jobFullName, buildId );
+        List<LoadResult> loadResults = LoadResultCache.INSTANCE.get( key );
+        if ( loadResults != null )
+        {
+            return loadResults;
+        }
+        try
         {
-            ElasticHost elasticHost = ElasticHost.get( elasticHostName );
-            try (ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore())
+            if ( loadResultsJson != null )
             {
-                this.loadResults = elasticResultStore.searchResultsByExternalId( buildId );
-                this.loadResultsJson = LoadTestResultPublisher.OBJECT_MAPPER.writeValueAsString( loadResults );
+                loadResults = parse( loadResultsJson );
             }
-            catch ( Exception e )
+            else
             {
-                LOGGER.error( e.getMessage(), e );
-                this.loadResults = Collections.emptyList();
+                ElasticHost elasticHost = ElasticHost.get( elasticHostName );
+                if ( elasticHost == null )
+                {
+                    // published without elastic host, older builds did not record the ids which use the default
+                    // id prefix unless one was configured
+                    loadResults = LocalResultStore.get().get( resultUuids != null //
+                                                                  ? resultUuids //
+                                                                  : Collections.singletonList(
+                                                                      "jenkins-" + jobName + "-" + buildId ) );
+                }
+                else
+                {
+                    ElasticResultStore elasticResultStore = elasticHost.getElasticResultStore();
+                    loadResults = elasticResultStore.searchResultsByExternalId( buildId );
+                }
+                this.loadResultsJson = LoadTestResultPublisher.OBJECT_MAPPER.writeValueAsString( loadResults );
             }
         }
+        catch ( Exception e )
+        {
+            LOGGER.error( e.getMessage(), e );
+            return Collections.emptyList();
+        }
+        LoadResultCache.INSTANCE.put( key, loadResults );
         return loadResults;
     }
 
@@ -148,7 +190,7 @@ public class LoadTestResultBuildAction
 
     public List<LoadResult> getLoadResultsOrderByEstimatedQps()
     {
-        return loadResults.stream() //
+        return getLoadResults().stream() //
             .sorted( Comparator.comparingInt( value -> estimatedQps( getLoaderConfig( (LoadResult) value ) ) ) ) //
             .collect( Collectors.toList() );
     }
@@ -33,6 +33,7 @@ import jenkins.tasks.SimpleBuildStep;
 import org.apache.commons.lang3.StringUtils;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.mortbay.jetty.load.generator.jenkins.JsonResponses;
 import org.mortbay.jetty.load.generator.listeners.LoadResult;
 import org.mortbay.jetty.load.generator.store.ElasticResultStore;
 import org.mortbay.jetty.load.generator.store.ResultStore;
@@ -41,8 +42,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -61,8 +63,6 @@ public class LoadTestResultPublisher
 
     private String idPrefix;
 
-    private transient ResultStore resultStore;
-
     public static final ObjectMapper OBJECT_MAPPER =
         new ObjectMapper().configure( DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES, false );
 
@@ -75,27 +75,13 @@ public class LoadTestResultPublisher
     }
 
     public ResultStore getResultStore( ElasticHost elasticHost )
-    {
-        if ( this.resultStore != null )
-        {
-            return this.resultStore;
-        }
-        initializeResultStore( elasticHost );
-        return this.resultStore;
-
-    }
-
-    private void initializeResultStore( ElasticHost elasticHost )
     {
         if ( elasticHost != null && StringUtils.isNotEmpty( elasticHost.getElasticHost() ) )
         {
-            this.resultStore = elasticHost.buildElasticResultStore();
-        }
-        else
-        {
-            this.resultStore = Empty.INSTANCE;
-            LOGGER.info( "No elastic host defined so result will not be stored " );
+            return elasticHost.getElasticResultStore();
         }
+        LOGGER.info( "No elastic host defined so result will be stored under the Jenkins home" );
+        return LocalResultStore.get();
     }
 
     public String getElasticHostName()
@@ -168,10 +154,53 @@ public class LoadTestResultPublisher
             elasticHostName = elasticHost.isPresent() ? elasticHost.get().getElasticHostName() : "";
         }
 
+        if ( StringUtils.isEmpty( elasticHostName ) )
+        {
+            // no elastic host at all so keep the result file of the workspace under the Jenkins home
+            publishLocal( run, filePath, taskListener );
+            return;
+        }
+
         ElasticHost elasticHost = ElasticHostProjectProperty.DESCRIPTOR.getElasticHostByName( elasticHostName );
-        ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore();
+        ElasticResultStore elasticResultStore = elasticHost.getElasticResultStore();
         List<LoadResult> loadResults = elasticResultStore.searchResultsByExternalId( run.getId());//"547" );// run.getId() );
 
+        addResults( run, loadResults );
+        if ( !loadResults.isEmpty() )
+        {
+            // the version may be a new one
+            JettyVersionsCache.INSTANCE.refresh( elasticHost );
+        }
+    }
+
+    private void publishLocal( Run<?, ?> run, FilePath filePath, TaskListener taskListener )
+        throws InterruptedException, IOException
+    {
+        FilePath resultFile = StringUtils.isEmpty( resultFilePath ) ? null : filePath.child( resultFilePath );
+        if ( resultFile == null || !resultFile.exists() )
+        {
+            taskListener.getLogger().println( "Cannot find load result file" );
+            return;
+        }
+        LoadResult loadResult;
+        try (InputStream inputStream = resultFile.read())
+        {
+            loadResult = JsonResponses.OBJECT_MAPPER.readValue( inputStream, LoadResult.class );
+        }
+
+        String uuid = StringUtils.isEmpty( idPrefix ) ? "jenkins-" + run.getParent().getName() : idPrefix;
+        uuid += "-" + run.getId();
+        loadResult.uuid( uuid ).uuidPrefix( idPrefix );
+
+        LocalResultStore.get().save( loadResult );
+        taskListener.getLogger().println( "Load result stored locally with id: " + loadResult.getUuid() );
+
+        addResults( run, Collections.singletonList( loadResult ) );
+    }
+
+    private void addResults( Run<?, ?> run, List<LoadResult> loadResults )
+        throws IOException
+    {
         try
         {
             run.addAction( new LoadTestResultBuildAction( null, run, elasticHostName,
@@ -226,72 +255,4 @@ public class LoadTestResultPublisher
         }
 
     }
-
-
-    private static class Empty
-        implements ResultStore
-    {
-        static final Empty INSTANCE = new Empty();
-
-        @Override
-        public void initialize( Map<String, String> setupData )
-        {
-
-        }
-
-        @Override
-        public void save( LoadResult loadResult )
-        {
-            LOGGER.info( "No elastic host defined so results are not stored " );
-        }
-
-        @Override
-        public void remove( LoadResult loadResult )
-        {
-            // no op
-        }
-
-        @Override
-        public List<LoadResult> get( List<String> loadResultId )
-        {
-            return null;
-        }
-
-        @Override
-        public List<LoadResult> find( QueryFilter queryFilter )
-        {
-            return null;
-        }
-
-        @Override
-        public List<LoadResult> findAll()
-        {
-            return null;
-        }
-
-        @Override
-        public String getProviderId()
-        {
-            return null;
-        }
-
-        @Override
-        public boolean isActive( Map<String, String> setupData )
-        {
-            return false;
-        }
-
-        @Override
-        public void close()
-            throws IOException
-        {
-            //no op
-        }
-
-        @Override
-        public LoadResult get( String loadResultId )
-        {
-            return null;
-        }
-    }
 }
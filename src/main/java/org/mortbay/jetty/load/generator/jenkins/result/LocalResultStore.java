@@ -0,0 +1,671 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.mortbay.jetty.load.generator.jenkins.RunInformations;
+import org.mortbay.jetty.load.generator.listeners.LoadResult;
+import org.mortbay.jetty.load.generator.store.ResultStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ResultStore} kept under the Jenkins home when no Elasticsearch host is configured.
+ * Results are appended as compact json lines to <code>loadgenerator/results.jsonl</code>, removals are appended as
+ * tombstones. The file is scanned once at startup to build in memory indexes on uuid, jetty version, transport,
+ * estimated qps and start timestamp which point to the offset of each record, so queries only read the matching
+ * records. Once superseded records and tombstones outnumber the live records, the file is rewritten with the
+ * live records only.
+ */
+public class LocalResultStore
+    implements ResultStore
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( LocalResultStore.class );
+
+    public static final String PROVIDER_ID = "local";
+
+    public static final String FILE_NAME = "results.jsonl";
+
+    /**
+     * superseded records and tombstones tolerated before compacting, whatever the number of live records
+     */
+    private static final int MIN_DEAD_RECORDS = 64;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper() //
+        .setSerializationInclusion( JsonInclude.Include.NON_NULL ) //
+        .configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+
+    /**
+     * start timestamp then uuid, the order of the {@link Query#before(long, String)} cursor
+     */
+    private static final Comparator<Entry> ORDER =
+        Comparator.<Entry>comparingLong( entry -> entry.timestamp ).thenComparing( entry -> entry.uuid );
+
+    private static LocalResultStore instance;
+
+    private final File file;
+
+    private final Map<String, Entry> byUuid = new HashMap<>();
+
+    private final Map<String, List<Entry>> byJettyVersion = new HashMap<>();
+
+    private final Map<String, List<Entry>> byTransport = new HashMap<>();
+
+    private final Map<Integer, List<Entry>> byEstimatedQps = new HashMap<>();
+
+    private final NavigableMap<Long, List<Entry>> byTimestamp = new TreeMap<>();
+
+    private long length;
+
+    // superseded records, tombstones and corrupted lines in the file
+    private long deadRecords;
+
+    public LocalResultStore( File file )
+    {
+        this.file = file;
+        try
+        {
+            load();
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * @return the store of this Jenkins instance, loaded on first use
+     */
+    public static synchronized LocalResultStore get()
+    {
+        if ( instance == null )
+        {
+            File directory = new File( Jenkins.get().getRootDir(), "loadgenerator" );
+            instance = new LocalResultStore( new File( directory, FILE_NAME ) );
+        }
+        return instance;
+    }
+
+    @Override
+    public void initialize( Map<String, String> setupData )
+    {
+        // no op everything is under the Jenkins home
+    }
+
+    @Override
+    public boolean isActive( Map<String, String> setupData )
+    {
+        return true;
+    }
+
+    @Override
+    public String getProviderId()
+    {
+        return PROVIDER_ID;
+    }
+
+    @Override
+    public void save( LoadResult loadResult )
+    {
+        JsonNode record = OBJECT_MAPPER.valueToTree( loadResult );
+        try
+        {
+            synchronized ( this )
+            {
+                long offset = append( record );
+                if ( remove( byUuid.get( record.path( "uuid" ).asText() ) ) )
+                {
+                    deadRecords++;
+                }
+                index( record, offset, (int) ( length - offset ) );
+                compactIfNeeded();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    @Override
+    public void remove( LoadResult loadResult )
+    {
+        try
+        {
+            synchronized ( this )
+            {
+                Entry entry = byUuid.get( loadResult.getUuid() );
+                if ( entry != null )
+                {
+                    append( OBJECT_MAPPER.createObjectNode().put( "removed", entry.uuid ) );
+                    remove( entry );
+                    // the record and its tombstone
+                    deadRecords += 2;
+                    compactIfNeeded();
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * Reads are done holding the lock as well, so offsets are not moved by a compaction meanwhile.
+     */
+    @Override
+    public synchronized LoadResult get( String loadResultId )
+    {
+        Entry entry = byUuid.get( loadResultId );
+        return entry == null ? null : read( Collections.singletonList( entry ), LoadResult.class ).get( 0 );
+    }
+
+    @Override
+    public synchronized List<LoadResult> get( List<String> loadResultIds )
+    {
+        List<Entry> entries = new ArrayList<>( loadResultIds.size() );
+        loadResultIds.stream().map( byUuid::get ).filter( entry -> entry != null ).forEach( entries::add );
+        return read( entries, LoadResult.class );
+    }
+
+    /**
+     * {@link ResultStore.QueryFilter} does not carry any criteria, so all the results are returned, use
+     * {@link #find(Query)} to query the indexes.
+     */
+    @Override
+    public List<LoadResult> find( QueryFilter queryFilter )
+    {
+        return findAll();
+    }
+
+    @Override
+    public List<LoadResult> findAll()
+    {
+        return find( new Query() );
+    }
+
+    /**
+     * @return the matching results ordered by start timestamp
+     */
+    public synchronized List<LoadResult> find( Query query )
+    {
+        return read( entries( query ), LoadResult.class );
+    }
+
+    /**
+     * Same as {@link #find(Query)} but only maps the fields of the trends.
+     */
+    public synchronized List<RunInformations> findRunInformations( Query query )
+    {
+        return read( entries( query ), RunInformations.class );
+    }
+
+    /**
+     * @return jetty version as key, number of results as value
+     */
+    public synchronized Map<String, String> getJettyVersions()
+    {
+        return byJettyVersion.entrySet().stream() //
+            .collect( Collectors.toMap( Map.Entry::getKey, e -> String.valueOf( e.getValue().size() ) ) );
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        // no op nothing is kept open
+    }
+
+    private synchronized List<Entry> entries( Query query )
+    {
+        // start from the most selective index
+        Collection<Entry> candidates = null;
+        if ( query.jettyVersion != null )
+        {
+            candidates = byJettyVersion.getOrDefault( query.jettyVersion, Collections.emptyList() );
+        }
+        if ( query.transport != null )
+        {
+            candidates = smallest( candidates, byTransport.getOrDefault( StringUtils.lowerCase( query.transport ),
+                                                                         Collections.emptyList() ) );
+        }
+        if ( query.estimatedQps != null )
+        {
+            candidates = smallest( candidates, byEstimatedQps.getOrDefault( query.estimatedQps,
+                                                                            Collections.emptyList() ) );
+        }
+        if ( candidates == null )
+        {
+            candidates = new ArrayList<>();
+            for ( List<Entry> entries : byTimestamp.subMap( query.since, true, query.until, true ).values() )
+            {
+                candidates.addAll( entries );
+            }
+        }
+        List<Entry> entries = candidates.stream() //
+            .filter( query::matches ) //
+            .sorted( ORDER ) //
+            .collect( Collectors.toList() );
+        int size = entries.size();
+        // the most recent ones
+        return size <= query.limit ? entries : new ArrayList<>( entries.subList( size - query.limit, size ) );
+    }
+
+    private static Collection<Entry> smallest( Collection<Entry> current, Collection<Entry> other )
+    {
+        return current == null || other.size() < current.size() ? other : current;
+    }
+
+    private <T> List<T> read( List<Entry> entries, Class<T> type )
+    {
+        List<T> results = new ArrayList<>( entries.size() );
+        if ( entries.isEmpty() )
+        {
+            return results;
+        }
+        try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ))
+        {
+            for ( Entry entry : entries )
+            {
+                ByteBuffer buffer = ByteBuffer.allocate( entry.length );
+                while ( buffer.hasRemaining() )
+                {
+                    if ( channel.read( buffer, entry.offset + buffer.position() ) < 0 )
+                    {
+                        throw new IOException( "truncated record at " + entry.offset + " in " + file );
+                    }
+                }
+                JsonNode record = OBJECT_MAPPER.readTree( buffer.array() );
+                results.add( type == RunInformations.class //
+                                 ? type.cast( new RunInformations( record ) ) //
+                                 : OBJECT_MAPPER.treeToValue( record, type ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        return results;
+    }
+
+    private long append( JsonNode record )
+        throws IOException
+    {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes( record );
+        Files.createDirectories( file.getParentFile().toPath() );
+        try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE,
+                                                     StandardOpenOption.WRITE, StandardOpenOption.APPEND ))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( bytes.length + 1 );
+            buffer.put( bytes ).put( (byte) '\n' ).flip();
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+        }
+        long offset = length;
+        length += bytes.length + 1;
+        return offset;
+    }
+
+    private void load()
+        throws IOException
+    {
+        if ( !file.exists() )
+        {
+            return;
+        }
+        try (InputStream inputStream = Files.newInputStream( file.toPath() ))
+        {
+            // lines are parsed straight from the read buffer, only the ones spanning two reads are copied
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            ByteArrayOutputStream partial = new ByteArrayOutputStream();
+            long offset = 0;
+            int read;
+            while ( ( read = inputStream.read( buffer ) ) >= 0 )
+            {
+                int start = 0;
+                for ( int i = 0; i < read; i++ )
+                {
+                    if ( buffer[i] != '\n' )
+                    {
+                        continue;
+                    }
+                    if ( partial.size() > 0 )
+                    {
+                        partial.write( buffer, start, i - start );
+                        loadRecord( partial.toByteArray(), 0, partial.size(), offset );
+                        offset += partial.size() + 1;
+                        partial.reset();
+                    }
+                    else
+                    {
+                        loadRecord( buffer, start, i - start, offset );
+                        offset += i - start + 1;
+                    }
+                    start = i + 1;
+                }
+                partial.write( buffer, start, read - start );
+            }
+            // a partial last record from an interrupted write is ignored and overwritten by the next one
+            length = offset;
+        }
+        if ( length < file.length() )
+        {
+            try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.WRITE ))
+            {
+                channel.truncate( length );
+            }
+        }
+        LOGGER.debug( "{} results loaded from {}", byUuid.size(), file );
+        compactIfNeeded();
+    }
+
+    private void loadRecord( byte[] line, int start, int size, long offset )
+    {
+        try
+        {
+            JsonNode record = OBJECT_MAPPER.readTree( line, start, size );
+            if ( record == null || !record.isObject() )
+            {
+                throw new IOException( "not a json object" );
+            }
+            if ( record.has( "removed" ) )
+            {
+                // the tombstone and the record it removes
+                deadRecords += remove( byUuid.get( record.get( "removed" ).asText() ) ) ? 2 : 1;
+            }
+            else
+            {
+                if ( remove( byUuid.get( record.path( "uuid" ).asText() ) ) )
+                {
+                    deadRecords++;
+                }
+                index( record, offset, size );
+            }
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "ignore corrupted record at {} in {}: {}", offset, file, e.getMessage() );
+            deadRecords++;
+        }
+    }
+
+    private void compactIfNeeded()
+        throws IOException
+    {
+        if ( deadRecords > MIN_DEAD_RECORDS && deadRecords > byUuid.size() )
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the file with the live records only, in their current order, then moves it over the current one.
+     */
+    private void compact()
+        throws IOException
+    {
+        List<Entry> live = new ArrayList<>( byUuid.values() );
+        live.sort( Comparator.comparingLong( entry -> entry.offset ) );
+        File tmp = new File( file.getParentFile(), FILE_NAME + ".tmp" );
+        List<Entry> moved = new ArrayList<>( live.size() );
+        long offset = 0;
+        try (FileChannel in = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+             FileChannel out = FileChannel.open( tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                 StandardOpenOption.TRUNCATE_EXISTING ))
+        {
+            for ( Entry entry : live )
+            {
+                // with the line separator
+                long transferred = 0;
+                while ( transferred < entry.length + 1 )
+                {
+                    transferred += in.transferTo( entry.offset + transferred, entry.length + 1 - transferred, out );
+                }
+                moved.add( entry.moveTo( offset ) );
+                offset += entry.length + 1;
+            }
+            out.force( true );
+        }
+        Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        LOGGER.info( "compacted {} from {} to {} bytes, {} dead records dropped", file, length, offset, deadRecords );
+
+        byUuid.clear();
+        byJettyVersion.clear();
+        byTransport.clear();
+        byEstimatedQps.clear();
+        byTimestamp.clear();
+        moved.forEach( this::index );
+        length = offset;
+        deadRecords = 0;
+    }
+
+    private void index( JsonNode record, long offset, int length )
+    {
+        int estimatedQps = 0;
+        for ( JsonNode loadConfig : record.path( "loadConfigs" ) )
+        {
+            if ( "LOADER".equals( loadConfig.path( "type" ).asText() ) )
+            {
+                estimatedQps = loadConfig.path( "instanceNumber" ).asInt() //
+                    * loadConfig.path( "resourceNumber" ).asInt() //
+                    * loadConfig.path( "resourceRate" ).asInt();
+                break;
+            }
+        }
+        Entry entry = new Entry( offset, length, record.path( "uuid" ).asText(), //
+                                 record.path( "serverInfo" ).path( "jettyVersion" ).asText(), //
+                                 StringUtils.lowerCase( record.path( "transport" ).asText() ), //
+                                 estimatedQps, //
+                                 record.path( "collectorInformations" ).path( "startTimeStamp" ).asLong() );
+        index( entry );
+    }
+
+    private void index( Entry entry )
+    {
+        byUuid.put( entry.uuid, entry );
+        byJettyVersion.computeIfAbsent( entry.jettyVersion, key -> new ArrayList<>() ).add( entry );
+        byTransport.computeIfAbsent( entry.transport, key -> new ArrayList<>() ).add( entry );
+        byEstimatedQps.computeIfAbsent( entry.estimatedQps, key -> new ArrayList<>() ).add( entry );
+        byTimestamp.computeIfAbsent( entry.timestamp, key -> new ArrayList<>() ).add( entry );
+    }
+
+    /**
+     * @return <code>false</code> if there is no entry
+     */
+    private boolean remove( Entry entry )
+    {
+        if ( entry == null )
+        {
+            return false;
+        }
+        byUuid.remove( entry.uuid );
+        remove( byJettyVersion, entry.jettyVersion, entry );
+        remove( byTransport, entry.transport, entry );
+        remove( byEstimatedQps, entry.estimatedQps, entry );
+        remove( byTimestamp, entry.timestamp, entry );
+        return true;
+    }
+
+    private static <K> void remove( Map<K, List<Entry>> index, K key, Entry entry )
+    {
+        List<Entry> entries = index.get( key );
+        if ( entries != null && entries.remove( entry ) && entries.isEmpty() )
+        {
+            index.remove( key );
+        }
+    }
+
+    /**
+     * Criteria of {@link #find(Query)}, all optional.
+     */
+    public static class Query
+    {
+        private String jettyVersion;
+
+        private String transport;
+
+        private Integer estimatedQps;
+
+        // start timestamp, inclusive
+        private long since = 0;
+
+        private long until = Long.MAX_VALUE;
+
+        private int limit = Integer.MAX_VALUE;
+
+        private long beforeTimestamp = Long.MAX_VALUE;
+
+        private String beforeUuid;
+
+        public Query jettyVersion( String jettyVersion )
+        {
+            this.jettyVersion = jettyVersion;
+            return this;
+        }
+
+        public Query transport( String transport )
+        {
+            this.transport = transport;
+            return this;
+        }
+
+        public Query estimatedQps( Integer estimatedQps )
+        {
+            this.estimatedQps = estimatedQps;
+            return this;
+        }
+
+        public Query since( long since )
+        {
+            this.since = since;
+            return this;
+        }
+
+        public Query until( long until )
+        {
+            this.until = until;
+            return this;
+        }
+
+        /**
+         * only the results ordered before this one, by start timestamp then uuid, are returned
+         *
+         * @param uuid <code>null</code> to exclude all the results of the timestamp
+         */
+        public Query before( long timestamp, String uuid )
+        {
+            this.beforeTimestamp = timestamp;
+            this.beforeUuid = uuid;
+            return this;
+        }
+
+        /**
+         * only the most recent matching results are returned
+         */
+        public Query limit( int limit )
+        {
+            this.limit = limit;
+            return this;
+        }
+
+        private boolean matches( Entry entry )
+        {
+            return ( jettyVersion == null || jettyVersion.equals( entry.jettyVersion ) ) //
+                && ( transport == null || StringUtils.equalsIgnoreCase( transport, entry.transport ) ) //
+                && ( estimatedQps == null || estimatedQps == entry.estimatedQps ) //
+                && entry.timestamp >= since && entry.timestamp <= until //
+                && isBefore( entry );
+        }
+
+        private boolean isBefore( Entry entry )
+        {
+            if ( entry.timestamp != beforeTimestamp )
+            {
+                return entry.timestamp < beforeTimestamp;
+            }
+            return beforeUuid != null && entry.uuid.compareTo( beforeUuid ) < 0;
+        }
+    }
+
+    private static class Entry
+    {
+        private final long offset;
+
+        private final int length;
+
+        private final String uuid;
+
+        private final String jettyVersion;
+
+        private final String transport;
+
+        private final int estimatedQps;
+
+        private final long timestamp;
+
+        private Entry( long offset, int length, String uuid, String jettyVersion, String transport, int estimatedQps,
+                       long timestamp )
+        {
+            this.offset = offset;
+            this.length = length;
+            this.uuid = uuid;
+            this.jettyVersion = jettyVersion;
+            this.transport = transport;
+            this.estimatedQps = estimatedQps;
+            this.timestamp = timestamp;
+        }
+
+        private Entry moveTo( long offset )
+        {
+            return new Entry( offset, length, uuid, jettyVersion, transport, estimatedQps, timestamp );
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ */
+public class BinaryValuesReaderTest
+{
+
+    @Test
+    public void testRoundTrip()
+        throws Exception
+    {
+        Path path = Files.createTempFile( "values", ".bin" );
+        path.toFile().deleteOnExit();
+        ValuesIndex.indexPath( path ).toFile().deleteOnExit();
+
+        List<Values> written = Arrays.asList( //
+            new Values().eventTimestamp( 1 ).method( "GET" ).path( "/index.html" ).status( 200 ).size( 1024 ) //
+                .responseTime( 3000 ).latencyTime( 1000 ), //
+            new Values().eventTimestamp( 2 ).method( "POST" ).path( "/form" ).status( 500 ).size( 12 ) //
+                .responseTime( 4000 ).latencyTime( 2000 ), //
+            new Values().eventTimestamp( 3 ).method( "GET" ).path( "/index.html" ).status( 404 ) //
+                .responseTime( 5000 ).latencyTime( 3000 ), //
+            new Values().eventTimestamp( 4 ).status( 200 ) );
+
+        try (BinaryValuesOutput output = new BinaryValuesOutput( path, new ValuesDictionary() ))
+        {
+            for ( Values values : written )
+            {
+                output.write( values );
+            }
+        }
+
+        List<Values> read = new ArrayList<>();
+        try (BinaryValuesReader reader = new BinaryValuesReader( path ))
+        {
+            Values values;
+            while ( ( values = reader.read() ) != null )
+            {
+                read.add( values );
+            }
+        }
+
+        Assert.assertEquals( written.size(), read.size() );
+        for ( int i = 0; i < written.size(); i++ )
+        {
+            Assert.assertEquals( written.get( i ).toString(), read.get( i ).toString() );
+        }
+    }
+
+    @Test
+    public void testCompressedRoundTrip()
+        throws Exception
+    {
+        Path path = Files.createTempFile( "values", ".bin.lz4" );
+        path.toFile().deleteOnExit();
+
+        int count = 100_000;
+        try (BinaryValuesOutput output = new BinaryValuesOutput(
+            new Lz4BlockOutputStream( Files.newOutputStream( path ) ), new ValuesDictionary() ))
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                output.write( new Values().eventTimestamp( i ).method( "GET" ).path( "/path" + i % 10 ) //
+                                  .status( 200 ).size( i % 1024 ).responseTime( i * 7 ).latencyTime( i * 3 ) );
+            }
+        }
+        Assert.assertTrue( Files.size( path ) < count * BinaryValuesCodec.RECORD_SIZE );
+
+        Values values = new Values();
+        try (BinaryValuesReader reader = new BinaryValuesReader( path ))
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                Assert.assertTrue( reader.read( values ) );
+                Assert.assertEquals( i, values.getEventTimestamp() );
+                Assert.assertEquals( "/path" + i % 10, values.getPath() );
+                Assert.assertEquals( i * 7, values.getResponseTime() );
+            }
+            Assert.assertFalse( reader.read( values ) );
+        }
+    }
+
+    @Test
+    public void testOversizedBlockRejected()
+        throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeInt( Lz4BlockOutputStream.MAGIC );
+        // corrupted header announcing a 1 GiB block
+        out.writeInt( 1 << 30 );
+        out.writeInt( 1 << 30 );
+
+        try (InputStream in = new Lz4BlockInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+        {
+            in.read();
+            Assert.fail( "oversized block accepted" );
+        }
+        catch ( IOException e )
+        {
+            Assert.assertTrue( e.getMessage(), e.getMessage().startsWith( "corrupted compressed block" ) );
+        }
+    }
+
+    @Test
+    public void testMappedSegmentsRecovered()
+        throws Exception
+    {
+        Path directory = Files.createTempDirectory( "values" );
+        Path path = directory.resolve( "values.bin" );
+
+        // interrupted run, the last segment is neither forced nor truncated
+        MappedValuesOutput interrupted =
+            new MappedValuesOutput( path, MappedValuesOutput.MIN_SEGMENT_SIZE, new ValuesDictionary() );
+        int count = 100_000;
+        for ( int i = 0; i < count; i++ )
+        {
+            interrupted.write( new Values().eventTimestamp( i ).method( "GET" ).path( "/path" + i % 5 ) //
+                                   .status( 200 ).responseTime( i ) );
+        }
+
+        List<Values> read = new ArrayList<>();
+        BinaryValuesReader.forEachSegment( path, values -> read.add( new Values().eventTimestamp(
+            values.getEventTimestamp() ).path( values.getPath() ) ) );
+        Assert.assertEquals( count, read.size() );
+        Assert.assertEquals( count - 1, read.get( count - 1 ).getEventTimestamp() );
+        List<Path> recovered = MappedValuesOutput.segments( path );
+        Assert.assertTrue( recovered.size() > 1 );
+        Assert.assertTrue( Files.size( recovered.get( recovered.size() - 1 ) ) < MappedValuesOutput.MIN_SEGMENT_SIZE );
+
+        // a new run on the same file does not append to the previous one
+        try (MappedValuesOutput output =
+                 new MappedValuesOutput( path, MappedValuesOutput.MIN_SEGMENT_SIZE, new ValuesDictionary() ))
+        {
+            output.write( new Values().eventTimestamp( count ).method( "POST" ).path( "/form" ).status( 200 ) );
+        }
+
+        read.clear();
+        List<Path> segments = MappedValuesOutput.segments( path );
+        Assert.assertEquals( Collections.singletonList( MappedValuesOutput.segmentPath( path, 0 ) ), segments );
+        BinaryValuesReader.forEach( segments, values -> read.add( new Values().eventTimestamp(
+            values.getEventTimestamp() ).path( values.getPath() ) ) );
+        Assert.assertEquals( 1, read.size() );
+        Assert.assertEquals( "/form", read.get( 0 ).getPath() );
+
+        for ( Path segment : segments )
+        {
+            Files.delete( segment );
+        }
+        Files.delete( directory );
+    }
+
+}
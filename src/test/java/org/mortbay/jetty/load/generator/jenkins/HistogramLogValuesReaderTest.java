@@ -0,0 +1,75 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class HistogramLogValuesReaderTest
+{
+
+    private static final String ENCODED_PATH = "/search result?q=a,b&lang=\u00e9";
+
+    @Test
+    public void testGlobalAndPerPathSeries()
+        throws Exception
+    {
+        Path path = Files.createTempFile( "values", ".hlog" );
+        path.toFile().deleteOnExit();
+
+        long start = System.currentTimeMillis();
+        try (HistogramLogValuesOutput output = new HistogramLogValuesOutput( path, new ValuesDictionary(), //
+                                                                             TimeUnit.MINUTES.toMillis( 1 ), //
+                                                                             TimeUnit.MINUTES.toMicros( 1 ), 3 ))
+        {
+            output.write( values( "/index.html", 2 ) );
+            output.write( values( "/index.html", 4 ) );
+            output.write( values( ENCODED_PATH, 8 ) );
+            // no path, only in the global series
+            output.write( values( null, 16 ) );
+        }
+
+        Map<String, List<ResponseTimeInfo>> series = HistogramLogValuesReader.readResponseTimeInfos( path, 100 );
+        Assert.assertEquals( new HashSet<>( Arrays.asList( HistogramLogValuesReader.GLOBAL, "/index.html", //
+                                                           ENCODED_PATH ) ), series.keySet() );
+
+        List<ResponseTimeInfo> global = series.get( HistogramLogValuesReader.GLOBAL );
+        Assert.assertEquals( 1, global.size() );
+        Assert.assertEquals( 16, global.get( 0 ).getTime() );
+        Assert.assertTrue( global.get( 0 ).getTimeStamp() >= start );
+
+        Assert.assertEquals( 1, series.get( "/index.html" ).size() );
+        Assert.assertEquals( 4, series.get( "/index.html" ).get( 0 ).getTime() );
+        Assert.assertEquals( 8, series.get( ENCODED_PATH ).get( 0 ).getTime() );
+
+        Assert.assertEquals( 2, HistogramLogValuesReader.readResponseTimeInfos( path, "/index.html", 0 ) //
+            .get( 0 ).getTime() );
+        Assert.assertEquals( 16, HistogramLogValuesReader.readResponseTimeInfos( path, null, 100 ) //
+            .get( 0 ).getTime() );
+        Assert.assertTrue( HistogramLogValuesReader.readResponseTimeInfos( path, "/unknown", 100 ).isEmpty() );
+    }
+
+    @Test
+    public void testTagRoundTrip()
+    {
+        String tag = HistogramLogValuesOutput.tag( ENCODED_PATH );
+        // the log format separates fields with commas and spaces
+        Assert.assertFalse( tag.contains( "," ) );
+        Assert.assertFalse( tag.contains( " " ) );
+        Assert.assertEquals( ENCODED_PATH, HistogramLogValuesReader.path( tag ) );
+        Assert.assertEquals( "", HistogramLogValuesReader.path( HistogramLogValuesOutput.tag( null ) ) );
+    }
+
+    private static Values values( String path, long responseTimeMillis )
+    {
+        return new Values().eventTimestamp( System.currentTimeMillis() ).method( "GET" ).path( path ) //
+            .status( 200 ).responseTime( TimeUnit.MILLISECONDS.toNanos( responseTimeMillis ) );
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IndexedValuesReaderTest
+{
+
+    @Test
+    public void testPathAndTimeRange()
+        throws Exception
+    {
+        Path path = Files.createTempFile( "values", ".bin" );
+        path.toFile().deleteOnExit();
+        ValuesIndex.indexPath( path ).toFile().deleteOnExit();
+
+        int count = 100_000;
+        try (BinaryValuesOutput output = new BinaryValuesOutput( path, new ValuesDictionary() ))
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                output.write( new Values().eventTimestamp( i ).method( "GET" ).path( "/path" + i % 3 ) //
+                                  .status( 200 ).responseTime( i ) );
+            }
+        }
+
+        for ( boolean rebuildIndex : new boolean[]{ false, true } )
+        {
+            if ( rebuildIndex )
+            {
+                Files.delete( ValuesIndex.indexPath( path ) );
+            }
+            try (IndexedValuesReader reader = new IndexedValuesReader( path ))
+            {
+                Assert.assertTrue( reader.getIndex().getBlocks().size() > 1 );
+                Assert.assertTrue( reader.blocks( null, 1000, 2000 ).size() < reader.getIndex().getBlocks().size() );
+                Assert.assertTrue( reader.blocks( "/unknown", 0, Long.MAX_VALUE ).isEmpty() );
+
+                List<Long> timestamps = new ArrayList<>();
+                reader.forEach( "/path1", 30_000, 60_000, values -> {
+                    Assert.assertEquals( "/path1", values.getPath() );
+                    Assert.assertEquals( "GET", values.getMethod() );
+                    timestamps.add( values.getEventTimestamp() );
+                } );
+                Assert.assertEquals( 10_000, timestamps.size() );
+                Assert.assertEquals( 30_001, timestamps.get( 0 ).longValue() );
+
+                AtomicLong sum = reader.collect( "/path1", 30_000, 60_000, AtomicLong::new, //
+                                                 ( total, values ) -> total.addAndGet( values.getResponseTime() ), //
+                                                 ( left, right ) -> new AtomicLong( left.get() + right.get() ) );
+                Assert.assertEquals( timestamps.stream().mapToLong( Long::longValue ).sum(), sum.get() );
+            }
+        }
+    }
+
+    @Test
+    public void testLongPathInIndex()
+        throws Exception
+    {
+        Path path = Files.createTempFile( "values", ".bin" );
+        path.toFile().deleteOnExit();
+        ValuesIndex.indexPath( path ).toFile().deleteOnExit();
+
+        // 64000 utf-8 bytes but 96000 modified utf-8 bytes, too long for writeUTF
+        StringBuilder longPath = new StringBuilder( "/" );
+        while ( longPath.length() < 32_000 )
+        {
+            longPath.appendCodePoint( 0x1F600 );
+        }
+        try (BinaryValuesOutput output = new BinaryValuesOutput( path, new ValuesDictionary() ))
+        {
+            output.write( new Values().eventTimestamp( 1 ).method( "GET" ).path( longPath.toString() ).status( 200 ) );
+            output.write( new Values().eventTimestamp( 2 ).method( "GET" ).path( "/short" ).status( 200 ) );
+        }
+
+        // the first reader builds and writes the index, the second one reads it back
+        for ( int i = 0; i < 2; i++ )
+        {
+            try (IndexedValuesReader reader = new IndexedValuesReader( path ))
+            {
+                Assert.assertEquals( 0, reader.getIndex().pathId( longPath.toString() ) );
+                List<Long> timestamps = new ArrayList<>();
+                reader.forEach( longPath.toString(), 0, Long.MAX_VALUE,
+                                values -> timestamps.add( values.getEventTimestamp() ) );
+                Assert.assertEquals( Collections.singletonList( 1L ), timestamps );
+            }
+        }
+    }
+
+}
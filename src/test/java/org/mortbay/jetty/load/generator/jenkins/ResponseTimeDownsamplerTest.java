@@ -0,0 +1,73 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ResponseTimeDownsamplerTest
+{
+
+    @Test
+    public void testBucketsBoundedByPoints()
+    {
+        int count = 100_000;
+        List<ResponseTimeInfo> responseTimeInfos = new ArrayList<>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            // one point per ms, a single slow response in the middle of the run
+            responseTimeInfos.add( new ResponseTimeInfo( 1_000 + i, i == count / 2 ? 5_000 : 10 + i % 10, 200 ) );
+        }
+
+        List<ResponseTimeBucket> buckets = ResponseTimeDownsampler.downsample( responseTimeInfos, 100 );
+        Assert.assertTrue( buckets.size() >= 50 );
+        Assert.assertTrue( buckets.size() <= 100 );
+
+        Assert.assertEquals( 1_000, buckets.get( 0 ).getTimeStamp() );
+        long total = 0;
+        long max = 0;
+        long previous = -1;
+        for ( ResponseTimeBucket bucket : buckets )
+        {
+            Assert.assertTrue( bucket.getTimeStamp() > previous );
+            Assert.assertTrue( bucket.getCount() > 0 );
+            Assert.assertTrue( bucket.getMin() <= bucket.getMean() && bucket.getMean() <= bucket.getMax() );
+            Assert.assertTrue( bucket.getMin() <= bucket.getP99() && bucket.getP99() <= bucket.getMax() );
+            previous = bucket.getTimeStamp();
+            total += bucket.getCount();
+            max = Math.max( max, bucket.getMax() );
+        }
+        Assert.assertEquals( count, total );
+        // two significant digits
+        Assert.assertTrue( max >= 5_000 && max <= 5_050 );
+    }
+
+    @Test
+    public void testIntervalGrowsWithTheRun()
+    {
+        ResponseTimeDownsampler downsampler = new ResponseTimeDownsampler( 10, 1 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            downsampler.add( i, 1 );
+        }
+        Assert.assertEquals( 1, downsampler.getInterval() );
+        Assert.assertEquals( 10, downsampler.getBuckets().size() );
+
+        downsampler.add( 100, 1 );
+        Assert.assertEquals( 16, downsampler.getInterval() );
+        List<ResponseTimeBucket> buckets = downsampler.getBuckets();
+        Assert.assertEquals( 2, buckets.size() );
+        Assert.assertEquals( 10, buckets.get( 0 ).getCount() );
+        Assert.assertEquals( 96, buckets.get( 1 ).getTimeStamp() );
+    }
+
+    @Test
+    public void testEmptyAndDefaultPoints()
+    {
+        Assert.assertTrue( ResponseTimeDownsampler.downsample( Collections.emptyList(), 0 ).isEmpty() );
+        Assert.assertTrue( ResponseTimeDownsampler.downsample( Collections.emptyList(), -1 ).isEmpty() );
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.mortbay.jetty.load.generator.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording hot path, from {@link ValuesFileWriter#onResourceNode(Resource.Info)} through the static
+ * <code>EventTranslatorTwoArg</code> (info + path dictionary) into the ring buffer slot, then to the output.
+ * Run with <code>-prof gc</code> (as {@link #main(String[])} does): <code>gc.alloc.rate.norm</code> must stay
+ * at 0 B/op for the binary formats (BINARY, MAPPED).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ValuesFileWriterBenchmark
+{
+
+    @Param( { "TEXT", "BINARY", "MAPPED" } )
+    private ValuesFileWriter.Format format;
+
+    private Path path;
+
+    private ValuesFileWriter valuesFileWriter;
+
+    private Resource.Info info;
+
+    @Setup( Level.Trial )
+    public void setup()
+        throws Exception
+    {
+        path = Files.createTempFile( "values", ".benchmark" );
+        valuesFileWriter = new ValuesFileWriter( path, format );
+        valuesFileWriter.readResolve();
+
+        info = new Resource( "/index.html" ).method( "GET" ).newInfo();
+        info.setStatus( 200 );
+        info.setRequestTime( System.nanoTime() );
+        info.setLatencyTime( 1000 );
+        info.setResponseTime( 2000 );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws Exception
+    {
+        valuesFileWriter.onEnd( null );
+        for ( Path segment : MappedValuesOutput.segments( path ) )
+        {
+            Files.delete( segment );
+        }
+        Files.deleteIfExists( path );
+        Files.deleteIfExists( ValuesIndex.indexPath( path ) );
+    }
+
+    @Benchmark
+    public void onResourceNode()
+    {
+        valuesFileWriter.onResourceNode( info );
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        Options options = new OptionsBuilder() //
+            .include( ValuesFileWriterBenchmark.class.getSimpleName() ) //
+            .addProfiler( GCProfiler.class ) //
+            .build();
+        new Runner( options ).run();
+    }
+
+}
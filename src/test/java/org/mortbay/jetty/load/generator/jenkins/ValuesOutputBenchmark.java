@@ -0,0 +1,100 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained consumer throughput per disruptor batch size: every batch ends with
+ * {@link ValuesOutput#endOfBatch()}, so a batch size of 1 is one file write per event.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ValuesOutputBenchmark
+{
+
+    private static final int EVENTS = 1024;
+
+    @Param( { "TEXT", "BINARY" } )
+    private ValuesFileWriter.Format format;
+
+    @Param( { "1", "32", "1024" } )
+    private int batchSize;
+
+    private Path path;
+
+    private ValuesOutput valuesOutput;
+
+    private Values values;
+
+    @Setup( Level.Trial )
+    public void setup()
+        throws Exception
+    {
+        path = Files.createTempFile( "values", ".benchmark" );
+        ValuesDictionary dictionary = new ValuesDictionary();
+        valuesOutput = format == ValuesFileWriter.Format.BINARY //
+            ? new BinaryValuesOutput( path, dictionary ) //
+            : new TextValuesOutput( path, dictionary );
+        values = new Values().eventTimestamp( System.currentTimeMillis() ) //
+            .methodId( dictionary.methodId( "GET" ) ) //
+            .pathId( dictionary.pathId( "/index.html" ) ) //
+            .status( 200 ).size( 1024 ).responseTime( 2000 ).latencyTime( 1000 );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws Exception
+    {
+        valuesOutput.close();
+        Files.deleteIfExists( path );
+        Files.deleteIfExists( ValuesIndex.indexPath( path ) );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( EVENTS )
+    public void write()
+        throws Exception
+    {
+        for ( int i = 0; i < EVENTS; i++ )
+        {
+            valuesOutput.write( values );
+            if ( ( i + 1 ) % batchSize == 0 )
+            {
+                valuesOutput.endOfBatch();
+            }
+        }
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        Options options = new OptionsBuilder() //
+            .include( ValuesOutputBenchmark.class.getSimpleName() ) //
+            .build();
+        new Runner( options ).run();
+    }
+
+}
@@ -0,0 +1,146 @@
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mortbay.jetty.load.generator.jenkins.RunInformations;
+import org.mortbay.jetty.load.generator.listeners.LoadResult;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LocalResultStoreTest
+{
+
+    private static final ObjectMapper OBJECT_MAPPER =
+        new ObjectMapper().configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+
+    private static LoadResult loadResult( int i )
+        throws Exception
+    {
+        return OBJECT_MAPPER.readValue( "{\"uuid\":\"uuid-" + i + "\"" //
+                                            + ",\"transport\":\"" + ( i % 2 == 0 ? "HTTP" : "H2C" ) + "\"" //
+                                            + ",\"serverInfo\":{\"jettyVersion\":\"9.4." + ( i % 3 ) + "\"}" //
+                                            + ",\"collectorInformations\":{\"startTimeStamp\":" + ( 1000 + i ) + "}" //
+                                            + ",\"loadConfigs\":[{\"type\":\"LOADER\",\"instanceNumber\":1" //
+                                            + ",\"resourceNumber\":2,\"resourceRate\":" + ( i % 2 + 1 ) + "}]}", //
+                                        LoadResult.class );
+    }
+
+    @Test
+    public void testIndexesAndReload()
+        throws Exception
+    {
+        File file = Files.createTempFile( "results", ".jsonl" ).toFile();
+        file.delete();
+        file.deleteOnExit();
+
+        LocalResultStore store = new LocalResultStore( file );
+        for ( int i = 0; i < 10; i++ )
+        {
+            store.save( loadResult( i ) );
+        }
+        store.remove( store.get( "uuid-3" ) );
+        // saving again replaces the previous record
+        store.save( store.get( "uuid-4" ) );
+
+        // a partial record of an interrupted write is ignored
+        Files.write( file.toPath(), "{\"uuid\":\"par".getBytes(), StandardOpenOption.APPEND );
+
+        for ( LocalResultStore reloaded : new LocalResultStore[]{ store, new LocalResultStore( file ) } )
+        {
+            Assert.assertEquals( 9, reloaded.findAll().size() );
+            Assert.assertNull( reloaded.get( "uuid-3" ) );
+            Assert.assertEquals( "3", reloaded.getJettyVersions().get( "9.4.0" ) );
+
+            List<RunInformations> runInformations =
+                reloaded.findRunInformations( new LocalResultStore.Query().jettyVersion( "9.4.0" ).limit( 2 ) );
+            Assert.assertEquals( 2, runInformations.size() );
+            // most recent ones in ascending order
+            Assert.assertEquals( 1006, runInformations.get( 0 ).getStartTimeStamp() );
+            Assert.assertEquals( 1009, runInformations.get( 1 ).getStartTimeStamp() );
+            Assert.assertEquals( "h2c", runInformations.get( 1 ).getTransport() );
+            Assert.assertEquals( 4, runInformations.get( 1 ).getEstimatedQps() );
+
+            Assert.assertEquals( 3, reloaded.find( new LocalResultStore.Query() //
+                                                       .transport( "h2c" ).estimatedQps( 4 ).since( 1004 ) ).size() );
+            Assert.assertEquals( 2, reloaded.find( new LocalResultStore.Query().since( 1001 ).until( 1002 ) ).size() );
+        }
+
+        new LocalResultStore( file ).save( loadResult( 11 ) );
+        Assert.assertEquals( 10, new LocalResultStore( file ).findAll().size() );
+    }
+
+    @Test
+    public void testCompaction()
+        throws Exception
+    {
+        File file = Files.createTempFile( "results", ".jsonl" ).toFile();
+        file.delete();
+        file.deleteOnExit();
+
+        LocalResultStore store = new LocalResultStore( file );
+        store.save( loadResult( 0 ) );
+        store.save( loadResult( 1 ) );
+        long size = file.length();
+        // superseded records and tombstones, compacted along the way
+        for ( int i = 0; i < 500; i++ )
+        {
+            store.save( loadResult( 1 ) );
+            store.save( loadResult( 2 ) );
+            store.remove( store.get( "uuid-2" ) );
+        }
+        Assert.assertTrue( file.length() < 100 * size );
+
+        for ( LocalResultStore reloaded : new LocalResultStore[]{ store, new LocalResultStore( file ) } )
+        {
+            Assert.assertEquals( 2, reloaded.findAll().size() );
+            Assert.assertNotNull( reloaded.get( "uuid-0" ) );
+            Assert.assertNotNull( reloaded.get( "uuid-1" ) );
+            Assert.assertNull( reloaded.get( "uuid-2" ) );
+        }
+    }
+
+    @Test
+    public void testPagesOfSameTimestamp()
+        throws Exception
+    {
+        File file = Files.createTempFile( "results", ".jsonl" ).toFile();
+        file.delete();
+        file.deleteOnExit();
+
+        LocalResultStore store = new LocalResultStore( file );
+        for ( int i = 0; i < 5; i++ )
+        {
+            LoadResult loadResult = loadResult( i );
+            loadResult.getCollectorInformations().startTimeStamp( 1000 );
+            store.save( loadResult );
+        }
+
+        // pages of 2 from the most recent, the cursor being the first result of the previous page
+        List<String> uuids = new ArrayList<>();
+        long timestamp = Long.MAX_VALUE;
+        String uuid = null;
+        while ( true )
+        {
+            List<RunInformations> page =
+                store.findRunInformations( new LocalResultStore.Query().before( timestamp, uuid ).limit( 2 ) );
+            if ( page.isEmpty() )
+            {
+                break;
+            }
+            for ( int i = page.size() - 1; i >= 0; i-- )
+            {
+                uuids.add( page.get( i ).getUuid() );
+            }
+            timestamp = page.get( 0 ).getStartTimeStamp();
+            uuid = page.get( 0 ).getUuid();
+        }
+        Assert.assertEquals( Arrays.asList( "uuid-4", "uuid-3", "uuid-2", "uuid-1", "uuid-0" ), uuids );
+    }
+}